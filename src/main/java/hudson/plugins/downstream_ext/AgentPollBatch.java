@@ -0,0 +1,254 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractProject;
+import hudson.model.ItemGroup;
+import hudson.model.Node;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Polls downstream projects whose SCM needs a workspace in rounds per agent.
+ * <p>
+ * The workspace of such a project is on the agent the project was last built on, so every
+ * poll talks to that agent. With many downstream projects sharing an agent, each of their
+ * asynchronous polls would otherwise occupy a thread of the {@link AsyncPollExecutor} while
+ * it waits for the same agent. Now the pending polls for an agent are collected per folder and
+ * polled one after another by a single task per round, while the next round collects the polls
+ * requested meanwhile. Polls of the same project within a round are merged.
+ * <p>
+ * A round polls at most {@code hudson.plugins.downstream_ext.AgentPollBatch.maxRoundSize} projects.
+ * It's queued as a task of one of its projects, so the rounds of a folder take turns with the
+ * other polls of that folder and with the other folders - like any other poll.
+ * <p>
+ * Enabled with the system property {@code hudson.plugins.downstream_ext.AgentPollBatch.enabled}.
+ * Without a running Jenkins - e.g. in unit tests - polls are never batched.
+ */
+final class AgentPollBatch {
+
+	private static final Logger LOGGER = Logger.getLogger(AgentPollBatch.class.getName());
+
+	static final boolean ENABLED = SystemProperties.getBoolean(AgentPollBatch.class.getName() + ".enabled");
+
+	static final int MAX_ROUND_SIZE = Math.max(1,
+			SystemProperties.getInteger(AgentPollBatch.class.getName() + ".maxRoundSize", 10));
+
+	private static final AgentPollBatch INSTANCE = new AgentPollBatch(AsyncPollExecutor.get(), MAX_ROUND_SIZE);
+
+	private final AsyncPollExecutor executor;
+
+	private final int maxRoundSize;
+
+	/**
+	 * Agents with pending or running rounds by node name and folder.
+	 */
+	private final Map<String, Agent> agents = new HashMap<String, Agent>();
+
+	/**
+	 * The agent whose rounds a project belongs to - as long as it has a pending or running poll.
+	 * Keeps the polls of a project in the rounds of the same agent, even if it's built elsewhere
+	 * meanwhile, so they never run in parallel.
+	 */
+	private final Map<AbstractProject<?, ?>, Agent> assigned = new HashMap<AbstractProject<?, ?>, Agent>();
+
+	AgentPollBatch(AsyncPollExecutor executor, int maxRoundSize) {
+		this.executor = executor;
+		this.maxRoundSize = maxRoundSize;
+	}
+
+	static AgentPollBatch get() {
+		return INSTANCE;
+	}
+
+	static boolean isEnabled() {
+		return ENABLED && Jenkins.getInstanceOrNull() != null;
+	}
+
+	/**
+	 * Adds the runner to the next round of polls on the agent the project was last built on.
+	 */
+	void execute(AbstractProject<?, ?> project, DownstreamDependency.PollRunner runner, PollPriority priority) {
+		Agent agent;
+		boolean start;
+		PollPriority roundPriority;
+		synchronized (this) {
+			agent = this.assigned.get(project);
+			if (agent == null) {
+				Node node = project.getLastBuiltOn();
+				// never built projects are polled on the controller
+				String name = node != null ? node.getNodeName() : "";
+				ItemGroup<?> parent = project.getParent();
+				String folder = parent != null ? parent.getFullName() : "";
+				// node names can't contain a colon
+				agent = this.agents.computeIfAbsent(name + ':' + folder, key -> new Agent(key, name));
+				this.assigned.put(project, agent);
+			}
+			DownstreamDependency.PollRunner waiting = agent.pending.get(project);
+			if (waiting == null || !waiting.merge(runner)) {
+				agent.pending.put(project, runner);
+			}
+			if (priority.getWeight() > agent.priority.getWeight()) {
+				agent.priority = priority;
+			}
+			start = !agent.scheduled;
+			agent.scheduled = true;
+			roundPriority = agent.priority;
+		}
+		if (start) {
+			schedule(project, agent, roundPriority);
+		}
+	}
+
+	private void schedule(AbstractProject<?, ?> project, Agent agent, PollPriority priority) {
+		// the round runs as a task of its first project, so it shares the pool - and the
+		// fairness between folders - with all other polls
+		this.executor.execute(project, new Round(agent), priority);
+	}
+
+	/**
+	 * Starts the round again with another project, if it has been dropped without running -
+	 * e.g. because its project has been deleted.
+	 */
+	private void dropped(Agent agent) {
+		AbstractProject<?, ?> next = null;
+		PollPriority priority = null;
+		synchronized (this) {
+			if (agent.pending.isEmpty()) {
+				agent.scheduled = false;
+				this.agents.remove(agent.key);
+			} else {
+				next = agent.pending.keySet().iterator().next();
+				priority = agent.priority;
+			}
+		}
+		if (next != null) {
+			schedule(next, agent, priority);
+		}
+	}
+
+	/**
+	 * Gives up the pending poll of a deleted project.
+	 */
+	void remove(AbstractProject<?, ?> project) {
+		DownstreamDependency.PollRunner runner = null;
+		synchronized (this) {
+			Agent agent = this.assigned.remove(project);
+			if (agent != null) {
+				runner = agent.pending.remove(project);
+			}
+		}
+		if (runner != null) {
+			runner.drop();
+		}
+	}
+
+	private void runRound(Agent agent) {
+		Map<AbstractProject<?, ?>, DownstreamDependency.PollRunner> round =
+			new LinkedHashMap<AbstractProject<?, ?>, DownstreamDependency.PollRunner>();
+		synchronized (this) {
+			Iterator<Map.Entry<AbstractProject<?, ?>, DownstreamDependency.PollRunner>> it =
+				agent.pending.entrySet().iterator();
+			while (it.hasNext() && round.size() < this.maxRoundSize) {
+				Map.Entry<AbstractProject<?, ?>, DownstreamDependency.PollRunner> e = it.next();
+				round.put(e.getKey(), e.getValue());
+				it.remove();
+			}
+			// of the polls left for the next round
+			agent.priority = PollPriority.LOW;
+			for (DownstreamDependency.PollRunner runner : agent.pending.values()) {
+				if (runner.getPriority().getWeight() > agent.priority.getWeight()) {
+					agent.priority = runner.getPriority();
+				}
+			}
+		}
+		LOGGER.fine("Polling " + round.size() + " downstream project(s) on " + agent.getDisplayName());
+		for (DownstreamDependency.PollRunner runner : round.values()) {
+			try {
+				runner.run();
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Polling " + runner.getProject().getName() + " for SCM changes failed", e);
+			}
+		}
+
+		AbstractProject<?, ?> next = null;
+		PollPriority nextPriority = null;
+		synchronized (this) {
+			for (AbstractProject<?, ?> project : round.keySet()) {
+				if (!agent.pending.containsKey(project)) {
+					this.assigned.remove(project);
+				}
+			}
+			if (agent.pending.isEmpty()) {
+				agent.scheduled = false;
+				this.agents.remove(agent.key);
+			} else {
+				next = agent.pending.keySet().iterator().next();
+				nextPriority = agent.priority;
+			}
+		}
+		if (next != null) {
+			schedule(next, agent, nextPriority);
+		}
+	}
+
+	/**
+	 * Polls the projects pending for an agent and folder - at most {@link #maxRoundSize} of them.
+	 */
+	final class Round implements Runnable {
+
+		private final Agent agent;
+
+		Round(Agent agent) {
+			this.agent = agent;
+		}
+
+		public void run() {
+			runRound(this.agent);
+		}
+
+		/**
+		 * Called instead of {@link #run()}, if the round has been dropped from the queue of its project.
+		 */
+		void drop() {
+			dropped(this.agent);
+		}
+	}
+
+	/**
+	 * The pending polls of the projects of one folder whose workspace is on the same agent.
+	 */
+	private static final class Agent {
+
+		private final String key;
+		private final String name;
+
+		private final Map<AbstractProject<?, ?>, DownstreamDependency.PollRunner> pending =
+			new LinkedHashMap<AbstractProject<?, ?>, DownstreamDependency.PollRunner>();
+
+		/**
+		 * Highest priority of the pending polls.
+		 */
+		private PollPriority priority = PollPriority.LOW;
+
+		/**
+		 * Whether a round has been started or is running.
+		 */
+		private boolean scheduled;
+
+		Agent(String key, String name) {
+			this.key = key;
+			this.name = name;
+		}
+
+		String getDisplayName() {
+			return this.name.isEmpty() ? "the built-in node" : this.name;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractProject;
+import hudson.model.ItemGroup;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Runs asynchronous SCM polls on a single, bounded pool of worker threads.
+ * <p>
+ * Tasks are queued per downstream project and the tasks of one project are
+ * run strictly one after another - so there is never more than one poll
+ * per project at a time. A project without pending tasks holds neither
+ * a queue nor a thread.
+ * <p>
+ * The number of worker threads can be set with the system property
+ * {@code hudson.plugins.downstream_ext.AsyncPollExecutor.poolSize}.
+ * With {@code hudson.plugins.downstream_ext.AsyncPollExecutor.virtualThreads=true} each
+ * turn of a project runs on a virtual thread instead - on Java 21 or newer; older
+ * runtimes keep using the pool. The number of polls running at the same time isn't
+ * limited then, but the polls of one project are still run one after another.
+ * <p>
+ * Free threads aren't handed out first come, first served. Projects with waiting tasks
+ * are grouped by folder and both folders and projects are picked by stride scheduling:
+ * each folder gets an equal share - weighted by the highest {@link PollPriority} waiting
+ * in it - and within a folder each project gets a share according to its priority.
+ * So a burst of polls in one folder can't starve the polls of the other folders.
+ * <p>
+ * At most {@code hudson.plugins.downstream_ext.AsyncPollExecutor.maxQueueLength} tasks wait
+ * for the same project. What happens to more tasks is defined by {@link OverflowPolicy},
+ * set with {@code hudson.plugins.downstream_ext.AsyncPollExecutor.overflowPolicy}.
+ */
+final class AsyncPollExecutor {
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncPollExecutor.class.getName());
+
+	static final int POOL_SIZE = Math.max(1,
+			SystemProperties.getInteger(AsyncPollExecutor.class.getName() + ".poolSize", 10));
+
+	static final int MAX_QUEUE_LENGTH = Math.max(1,
+			SystemProperties.getInteger(AsyncPollExecutor.class.getName() + ".maxQueueLength", 50));
+
+	static final OverflowPolicy OVERFLOW_POLICY = OverflowPolicy.valueOf(
+			SystemProperties.getString(AsyncPollExecutor.class.getName() + ".overflowPolicy", OverflowPolicy.COALESCE.name()));
+
+	/**
+	 * What to do with a task for a project which already has
+	 * {@link AsyncPollExecutor#MAX_QUEUE_LENGTH} waiting tasks.
+	 * Poll runners are always merged into a waiting one, so they never add to the queue length.
+	 */
+	enum OverflowPolicy {
+		/**
+		 * Drop the task which has waited longest.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Let a poll with a time limit take the result of the last waiting one - as it would
+		 * get the same result anyway. Drop the task which has waited longest, if that's not possible.
+		 */
+		COALESCE
+	}
+
+	static final boolean VIRTUAL_THREADS =
+			SystemProperties.getBoolean(AsyncPollExecutor.class.getName() + ".virtualThreads");
+
+	private static final AsyncPollExecutor INSTANCE = new AsyncPollExecutor(
+			VIRTUAL_THREADS ? createVirtualThreadExecutor(POOL_SIZE) : createPool(POOL_SIZE),
+			MAX_QUEUE_LENGTH, OVERFLOW_POLICY);
+
+	private final ExecutorService pool;
+
+	private final ConcurrentHashMap<AbstractProject<?, ?>, SerialQueue> queues =
+		new ConcurrentHashMap<AbstractProject<?, ?>, SerialQueue>();
+
+	/**
+	 * Pass length of weight 1 in stride scheduling.
+	 */
+	private static final long STRIDE = 1L << 20;
+
+	/**
+	 * Folders with queues waiting for a thread, lowest pass first.
+	 * Guarded by itself - as are all {@link Folder}s.
+	 */
+	private final PriorityQueue<Folder> readyFolders = new PriorityQueue<Folder>();
+	private final Map<String, Folder> folders = new HashMap<String, Folder>();
+	private long pass;
+	private long sequence;
+
+	private final int maxQueueLength;
+	private final OverflowPolicy overflowPolicy;
+
+	AsyncPollExecutor(int poolSize) {
+		this(poolSize, MAX_QUEUE_LENGTH, OVERFLOW_POLICY);
+	}
+
+	AsyncPollExecutor(int poolSize, int maxQueueLength, OverflowPolicy overflowPolicy) {
+		this(createPool(poolSize), maxQueueLength, overflowPolicy);
+	}
+
+	AsyncPollExecutor(ExecutorService pool, int maxQueueLength, OverflowPolicy overflowPolicy) {
+		this.pool = pool;
+		this.maxQueueLength = maxQueueLength;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	private static ExecutorService createPool(int poolSize) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new NamingThreadFactory(new DaemonThreadFactory(), "Downstream-Ext poller"));
+		// idle pool shouldn't keep any threads around
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Creates an executor which starts a virtual thread per task - or a pool
+	 * of the given size, if the runtime doesn't support virtual threads.
+	 */
+	static ExecutorService createVirtualThreadExecutor(int poolSize) {
+		try {
+			// by reflection, as long as the plugin is built for runtimes without virtual threads
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			ExecutorService executor = (ExecutorService) factory.invoke(null);
+			LOGGER.info("Running asynchronous SCM polls on virtual threads");
+			return executor;
+		} catch (NoSuchMethodException e) {
+			LOGGER.info("Virtual threads aren't supported by this Java runtime."
+					+ " Running asynchronous SCM polls on a pool of " + poolSize + " threads");
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Failed to create virtual threads for asynchronous SCM polls."
+					+ " Running them on a pool of " + poolSize + " threads", e);
+		}
+		return createPool(poolSize);
+	}
+
+	static AsyncPollExecutor get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Queues the task for the given project. It will be run after all tasks
+	 * which have been queued before for the same project have finished.
+	 * <p>
+	 * A {@link DownstreamDependency.PollRunner} is merged into a poll runner
+	 * which is still waiting for the same project instead of being queued.
+	 */
+	void execute(AbstractProject<?, ?> project, Runnable task) {
+		execute(project, task, PollPriority.NORMAL);
+	}
+
+	void execute(AbstractProject<?, ?> project, Runnable task, PollPriority priority) {
+		List<Runnable> dropped = new ArrayList<Runnable>(1);
+		queues.compute(project, (p, queue) -> {
+			if (queue == null) {
+				queue = new SerialQueue(p);
+			}
+			if (priority.compareTo(queue.priority) > 0) {
+				queue.priority = priority;
+			}
+			if (task instanceof DownstreamDependency.PollRunner) {
+				for (Runnable pending : queue.tasks) {
+					if (pending instanceof DownstreamDependency.PollRunner
+						&& ((DownstreamDependency.PollRunner) pending).merge((DownstreamDependency.PollRunner) task)) {
+						return queue;
+					}
+				}
+			}
+			if (queue.tasks.size() >= maxQueueLength) {
+				if (overflowPolicy == OverflowPolicy.COALESCE && coalesce(queue, task)) {
+					return queue;
+				}
+				dropped.add(queue.tasks.poll());
+			}
+			queue.tasks.add(task);
+			if (!queue.scheduled) {
+				queue.scheduled = true;
+				ready(queue);
+			}
+			return queue;
+		});
+		// outside of compute: cancelling may trigger further tasks
+		for (Runnable oldest : dropped) {
+			LOGGER.fine("Too many tasks waiting for " + project.getName() + ". Dropping the oldest one");
+			drop(oldest);
+			TriggerMetrics.get().droppedPoll();
+		}
+	}
+
+	/**
+	 * Lets the task take the result of the last waiting poll with a time limit.
+	 */
+	private static boolean coalesce(SerialQueue queue, Runnable task) {
+		if (!(task instanceof DownstreamDependency.TimedPoll)) {
+			return false;
+		}
+		Iterator<Runnable> it = queue.tasks.descendingIterator();
+		while (it.hasNext()) {
+			Runnable pending = it.next();
+			if (pending instanceof DownstreamDependency.TimedPoll
+				&& ((DownstreamDependency.TimedPoll) pending).addFollower((DownstreamDependency.TimedPoll) task)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gives up a task which won't be run: polls waited for are cancelled
+	 * and poll runners leave the journal.
+	 */
+	private static void drop(Runnable task) {
+		if (task instanceof Future) {
+			((Future<?>) task).cancel(false);
+		} else if (task instanceof DownstreamDependency.PollRunner) {
+			((DownstreamDependency.PollRunner) task).drop();
+		} else if (task instanceof AgentPollBatch.Round) {
+			// the round moves on to another project
+			((AgentPollBatch.Round) task).drop();
+		}
+	}
+
+	/**
+	 * Lets the queue run its next task as soon as it's its turn.
+	 */
+	private void ready(SerialQueue queue) {
+		synchronized (readyFolders) {
+			ItemGroup<?> parent = queue.project.getParent();
+			String key = parent != null ? parent.getFullName() : "";
+			Folder folder = folders.get(key);
+			if (folder == null) {
+				folder = new Folder();
+				// start at the current pass: an idle folder doesn't save up turns
+				folder.pass = pass;
+				folder.queuePass = pass;
+				folder.sequence = sequence++;
+				folders.put(key, folder);
+				readyFolders.add(folder);
+			}
+			queue.pass = Math.max(queue.pass, folder.queuePass);
+			queue.sequence = sequence++;
+			folder.queues.add(queue);
+		}
+		pool.execute(this::dispatch);
+	}
+
+	/**
+	 * Runs one turn of the queue whose turn it is. Called once for each {@link #ready} queue.
+	 */
+	private void dispatch() {
+		SerialQueue queue;
+		synchronized (readyFolders) {
+			Folder folder = readyFolders.poll();
+			queue = folder.queues.poll();
+			pass = folder.pass;
+			folder.queuePass = queue.pass;
+
+			int weight = queue.priority.getWeight();
+			for (SerialQueue waiting : folder.queues) {
+				weight = Math.max(weight, waiting.priority.getWeight());
+			}
+			folder.pass += STRIDE / weight;
+			queue.pass += STRIDE / queue.priority.getWeight();
+			if (folder.queues.isEmpty()) {
+				folders.values().remove(folder);
+			} else {
+				folder.sequence = sequence++;
+				readyFolders.add(folder);
+			}
+		}
+		queue.run();
+	}
+
+	/**
+	 * Drops all tasks for the given project which haven't been started, yet.
+	 * Polls waited for are cancelled, so no upstream build waits for them forever.
+	 */
+	void remove(AbstractProject<?, ?> project) {
+		SerialQueue queue = queues.remove(project);
+		if (queue == null) {
+			return;
+		}
+		// no longer reachable by anyone else
+		for (Runnable task : queue.tasks) {
+			drop(task);
+		}
+		queue.tasks.clear();
+	}
+
+	/**
+	 * Number of threads in the pool - or 0 for virtual threads, which aren't pooled.
+	 */
+	int getThreadCount() {
+		return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getPoolSize() : 0;
+	}
+
+	/**
+	 * Number of tasks waiting to be run, by full name of the project.
+	 * Projects without waiting tasks aren't included.
+	 */
+	Map<String, Integer> getPendingCounts() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (AbstractProject<?, ?> project : queues.keySet()) {
+			queues.computeIfPresent(project, (p, queue) -> {
+				if (!queue.tasks.isEmpty()) {
+					counts.put(p.getFullName(), queue.tasks.size());
+				}
+				return queue;
+			});
+		}
+		return counts;
+	}
+
+	/**
+	 * The pending tasks of a single project.
+	 * <p>
+	 * A queue runs a single task on each turn and then waits for its next turn,
+	 * so busy projects cannot lock out the others.
+	 * All state is only changed inside {@link ConcurrentHashMap#compute} for
+	 * the project, which serializes access per project.
+	 */
+	private final class SerialQueue implements Runnable, Comparable<SerialQueue> {
+
+		private final AbstractProject<?, ?> project;
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+		private boolean scheduled;
+
+		/**
+		 * Highest priority of the tasks queued since the queue has been created.
+		 */
+		private volatile PollPriority priority = PollPriority.LOW;
+
+		// stride scheduling state - guarded by readyFolders
+		private long pass;
+		private long sequence;
+
+		SerialQueue(AbstractProject<?, ?> project) {
+			this.project = project;
+		}
+
+		public int compareTo(SerialQueue other) {
+			int c = Long.compare(pass, other.pass);
+			return c != 0 ? c : Long.compare(sequence, other.sequence);
+		}
+
+		public void run() {
+			Runnable[] next = new Runnable[1];
+			queues.computeIfPresent(project, (p, queue) -> {
+				if (queue == this) {
+					next[0] = tasks.poll();
+				}
+				return queue;
+			});
+			try {
+				if (next[0] != null) {
+					next[0].run();
+				}
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Asynchronous poll for " + project.getName() + " failed", e);
+			} finally {
+				queues.computeIfPresent(project, (p, queue) -> {
+					if (queue != this) {
+						return queue;
+					}
+					if (tasks.isEmpty()) {
+						// nothing left: release the queue, so idle projects cost nothing
+						return null;
+					}
+					ready(this);
+					return queue;
+				});
+			}
+		}
+	}
+
+	/**
+	 * The queues of the projects of one folder which are waiting for a thread.
+	 */
+	private static final class Folder implements Comparable<Folder> {
+
+		private final PriorityQueue<SerialQueue> queues = new PriorityQueue<SerialQueue>();
+		private long pass;
+		private long sequence;
+
+		/**
+		 * Pass of the last queue which had a turn - where queues joining the folder start.
+		 */
+		private long queuePass;
+
+		public int compareTo(Folder other) {
+			int c = Long.compare(pass, other.pass);
+			return c != 0 ? c : Long.compare(sequence, other.sequence);
+		}
+	}
+}
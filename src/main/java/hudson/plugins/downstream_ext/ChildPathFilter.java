@@ -0,0 +1,86 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.AbstractProject;
+import hudson.model.Descriptor;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Restricts the triggering of a single child project to changes of certain paths
+ * in the upstream build.
+ *
+ * @see DownstreamTrigger#getChildPathFilters()
+ */
+public class ChildPathFilter extends AbstractDescribableImpl<ChildPathFilter> {
+
+	private final String childProject;
+	private final String includes;
+	private final String excludes;
+
+	/**
+	 * Compiled on first use - also after being read back from disk.
+	 */
+	private transient volatile PathFilter filter;
+
+	@DataBoundConstructor
+	public ChildPathFilter(String childProject, String includes, String excludes) {
+		this.childProject = Util.fixNull(childProject).trim();
+		this.includes = Util.fixEmptyAndTrim(includes);
+		this.excludes = Util.fixEmptyAndTrim(excludes);
+	}
+
+	public String getChildProject() {
+		return childProject;
+	}
+
+	public String getIncludes() {
+		return includes;
+	}
+
+	public String getExcludes() {
+		return excludes;
+	}
+
+	/**
+	 * Whether this filter is for the given child project.
+	 *
+	 * @param context
+	 *      the item group of the upstream project - relative names are resolved against it
+	 */
+	boolean isFor(ItemGroup<?> context, AbstractProject<?, ?> project) {
+		return project.getFullName().equals(Items.getCanonicalName(context, this.childProject))
+			|| project.getFullName().equals(this.childProject);
+	}
+
+	/**
+	 * @return null if all paths are accepted
+	 */
+	PathFilter getFilter() {
+		PathFilter f = this.filter;
+		if (f == null && (this.includes != null || this.excludes != null)) {
+			f = PathFilter.compile(this.includes, this.excludes);
+			this.filter = f;
+		}
+		return f;
+	}
+
+	/**
+	 * Identifies the patterns of this filter - e.g. to cache matches.
+	 */
+	String getKey() {
+		return Util.fixNull(this.includes) + '!' + Util.fixNull(this.excludes);
+	}
+
+	@Extension
+	public static class DescriptorImpl extends Descriptor<ChildPathFilter> {
+		@Override
+		public String getDisplayName() {
+			return "Path filter";
+		}
+	}
+}
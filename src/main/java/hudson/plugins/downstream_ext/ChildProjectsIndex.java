@@ -0,0 +1,167 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.AbstractProject;
+import hudson.model.Items;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Maps the full names of child projects to the upstream projects whose
+ * {@link DownstreamTrigger} refers to them - as child project or by a {@link ChildPathFilter}.
+ * <p>
+ * Kept up to date from item listener events and whenever a trigger contributes
+ * to the dependency graph, so that a renamed job only touches the upstream
+ * projects which actually refer to it.
+ * Entries of upstream projects which no longer exist or no longer have a trigger
+ * may stay around for a while - users of the index must check the trigger anyway.
+ */
+final class ChildProjectsIndex {
+
+	private static final ChildProjectsIndex INSTANCE = new ChildProjectsIndex();
+
+	/**
+	 * Full name of a child project to the full names of its upstream projects.
+	 */
+	private final Map<String, Set<String>> upstreamsByChild = new HashMap<String, Set<String>>();
+
+	/**
+	 * Full name of an upstream project to the full names of its child projects.
+	 */
+	private final Map<String, Set<String>> childrenByUpstream = new HashMap<String, Set<String>>();
+
+	private boolean built;
+
+	static ChildProjectsIndex get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Indexes all projects from scratch.
+	 */
+	@SuppressWarnings("rawtypes")
+	synchronized void rebuild() {
+		this.upstreamsByChild.clear();
+		this.childrenByUpstream.clear();
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			for (AbstractProject project : Jenkins.get().allItems(AbstractProject.class)) {
+				if (project instanceof MatrixConfiguration) {
+					continue;
+				}
+				DownstreamTrigger trigger = (DownstreamTrigger) project.getPublishersList().get(DownstreamTrigger.class);
+				if (trigger != null) {
+					add(project, trigger);
+				}
+			}
+		}
+		this.built = true;
+	}
+
+	/**
+	 * Re-indexes the project with its current trigger - if any.
+	 */
+	@SuppressWarnings("rawtypes")
+	void update(AbstractProject project) {
+		update(project, (DownstreamTrigger) project.getPublishersList().get(DownstreamTrigger.class));
+	}
+
+	synchronized void update(AbstractProject<?, ?> project, DownstreamTrigger trigger) {
+		if (project instanceof MatrixConfiguration) {
+			return;
+		}
+		remove(project.getFullName());
+		if (trigger != null) {
+			add(project, trigger);
+		}
+	}
+
+	/**
+	 * Removes the upstream project with the given full name.
+	 */
+	synchronized void remove(String upstreamFullName) {
+		Set<String> children = this.childrenByUpstream.remove(upstreamFullName);
+		if (children == null) {
+			return;
+		}
+		for (String child : children) {
+			Set<String> upstreams = this.upstreamsByChild.get(child);
+			if (upstreams != null) {
+				upstreams.remove(upstreamFullName);
+				if (upstreams.isEmpty()) {
+					this.upstreamsByChild.remove(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the existing upstream projects which refer to the child project
+	 * with the given full name.
+	 */
+	@SuppressWarnings("rawtypes")
+	List<AbstractProject> getUpstreamProjects(String childFullName) {
+		List<String> names;
+		synchronized (this) {
+			if (!this.built) {
+				rebuild();
+			}
+			Set<String> upstreams = this.upstreamsByChild.get(childFullName);
+			if (upstreams == null) {
+				return Collections.emptyList();
+			}
+			names = new ArrayList<String>(upstreams);
+		}
+
+		List<AbstractProject> projects = new ArrayList<AbstractProject>(names.size());
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			for (String name : names) {
+				AbstractProject project = Jenkins.get().getItemByFullName(name, AbstractProject.class);
+				if (project != null) {
+					projects.add(project);
+				}
+			}
+		}
+		return projects;
+	}
+
+	private void add(AbstractProject<?, ?> upstream, DownstreamTrigger trigger) {
+		String upstreamFullName = upstream.getFullName();
+		Set<String> children = new HashSet<String>();
+		for (String name : trigger.getChildProjectNames()) {
+			addChild(children, upstream, name);
+		}
+		// a renamed child project must be renamed in its path filter, too - even if it isn't a child anymore
+		for (ChildPathFilter filter : trigger.getChildPathFilters()) {
+			if (!filter.getChildProject().isEmpty()) {
+				addChild(children, upstream, filter.getChildProject());
+			}
+		}
+		for (String child : children) {
+			Set<String> upstreams = this.upstreamsByChild.get(child);
+			if (upstreams == null) {
+				upstreams = new HashSet<String>();
+				this.upstreamsByChild.put(child, upstreams);
+			}
+			upstreams.add(upstreamFullName);
+		}
+		this.childrenByUpstream.put(upstreamFullName, children);
+	}
+
+	private static void addChild(Set<String> children, AbstractProject<?, ?> upstream, String name) {
+		children.add(Items.getCanonicalName(upstream.getParent(), name));
+		if (name.indexOf('/') > 0) {
+			// a path may also be meant as full name - Jenkins#getItem falls back to that
+			children.add(name);
+		}
+	}
+}
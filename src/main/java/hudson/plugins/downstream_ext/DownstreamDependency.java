@@ -1,23 +1,37 @@
 package hudson.plugins.downstream_ext;
 
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.Cause;
+import hudson.model.Computer;
+import hudson.model.Item;
+import hudson.model.Node;
+import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.DependencyGraph.Dependency;
-import hudson.scm.ChangeLogSet;
+import hudson.plugins.downstream_ext.TriggerMetrics.Outcome;
 import hudson.scm.PollingResult;
-import hudson.util.LogTaskListener;
-import hudson.util.StreamTaskListener;
 
 import java.io.PrintStream;
-import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jenkins.util.Timer;
+
 /**
  * Defines a dependency introduced by the downstream-ext plugin.
  * 
@@ -42,51 +56,321 @@ public class DownstreamDependency extends Dependency {
 	@SuppressWarnings("rawtypes")
 	public boolean shouldTriggerBuild(AbstractBuild build,
 			TaskListener listener, List<Action> actions) {
-		PrintStream logger = listener.getLogger();
-		if(trigger.getStrategy().evaluate(trigger.getThreshold(), build.getResult())) {
-            AbstractProject p = getDownstreamProject();
-
-            // check whether local changes are needed or not
-            if (trigger.isOnlyIfLocalSCMChanges())
-            {
-                // check whether current build is triggered by SCM - then there should be changes
-                ChangeLogSet changes = build.getChangeSet();
-                if (changes.isEmptySet())
-                {
-                    // no changes - no downstream builds
-                    logger.println(Messages.DownstreamTrigger_NoSCMChanges(build.getProject().getName()));
-                    return false;
-                }
-            }
-
-            // we either have local changes now, or they are not needed
-            // in both cases we continue with the downstream SCM check
-
-            if(trigger.isOnlyIfSCMChanges()) {
-            	if (p.getScm().requiresWorkspaceForPolling()) {
-            		// Downstream project locks workspace while building.
-            		// If polled synchronously this could make the upstream build
-            		// lock for a possibly long time.
-            		// See HUDSON-5406
-            		logger.println(Messages.DownstreamTrigger_StartedAsynchPoll(p.getName()));
-            		Runnable run = getPoller(p, new Cause.UpstreamCause((Run<?,?>)build), actions);
-            		DownstreamTrigger.executeForProject(p, run);
-            		return false;
-            	}
-            	
-            	if (p.poll(listener).hasChanges()) {
-            		return true;
-            	} else {
-            		logger.println(Messages.DownstreamTrigger_NoSCMChanges(p.getName()));
-            		return false;
-            	}
-            }
-            return true;
-		} else {
-			logger.println(Messages.DownstreamTrigger_ConditionNotMet(trigger.getStrategy().getDisplayName(),
-					trigger.getThreshold()));
+		if (!shouldTriggerBuild(build, build.getResult(), listener, actions)) {
+			return false;
+		}
+		if (ScheduleBatch.isEnabled()) {
+			// submitted together with the other builds triggered at about the same time
+			// instead of by Jenkins - one at a time - with the checks Jenkins would do
+			if (mayTrigger(listener)) {
+				schedule(new TriggerRequest(new Cause.UpstreamCause((Run<?,?>)build), actions), listener);
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Like {@link #shouldTriggerBuild(AbstractBuild, TaskListener, List)}, but checks the
+	 * build result condition against the given result instead of the result of the build.
+	 */
+	@SuppressWarnings("rawtypes")
+	boolean shouldTriggerBuild(AbstractBuild build, Result result,
+			TaskListener listener, List<Action> actions) {
+		Outcome outcome = evaluate(build, result, listener, actions);
+		if (outcome == Outcome.TRIGGERED && trigger.getDebounceWindow() > 0) {
+			AbstractProject p = getDownstreamProject();
+			if (!mayTrigger(listener)) {
+				outcome = Outcome.REFUSED;
+			} else {
+				listener.getLogger().println(Messages.DownstreamTrigger_Debounced(p.getName(), trigger.getDebounceWindow()));
+				TriggerDebouncer.get().submit(p, new TriggerRequest(new Cause.UpstreamCause((Run<?,?>)build), actions),
+						trigger.getDebounceWindow());
+				outcome = Outcome.DEBOUNCED;
+			}
+		}
+		TriggerMetrics.get().evaluated(outcome);
+		return outcome == Outcome.TRIGGERED;
+	}
+
+	/**
+	 * The steps of a trigger decision which can be taken without polling the downstream project.
+	 */
+	private enum Check {
+		ALREADY_TRIGGERED,
+		CONDITION_NOT_MET,
+		NO_LOCAL_CHANGES,
+		NO_RELEVANT_CHANGES,
+		/**
+		 * Triggers without looking at the downstream SCM.
+		 */
+		NO_POLL_NEEDED,
+		ASYNC_POLL,
+		INLINE_POLL
+	}
+
+	/**
+	 * Takes all steps of the trigger decision up to polling the downstream project.
+	 * Shared by {@link #evaluate} and {@link #needsInlinePoll}, so they always agree.
+	 */
+	@SuppressWarnings("rawtypes")
+	private Check check(AbstractBuild build, Result result) {
+		if (build.getAction(EarlyTriggerAction.class) != null) {
+			// the matrix parent build has already triggered before it finished
+			return Check.ALREADY_TRIGGERED;
+		}
+		if (!trigger.isConditionMet(result)) {
+			// by far the most common way out - keep it cheap
+			return Check.CONDITION_NOT_MET;
+		}
+		// check whether local changes are needed or not
+		if (trigger.isOnlyIfLocalSCMChanges()
+				&& !LocalChangesAction.hasChanges(build, trigger.getLocalChangesFilter())) {
+			// no changes - no downstream builds
+			return Check.NO_LOCAL_CHANGES;
+		}
+		if (!hasRelevantChanges(build)) {
+			return Check.NO_RELEVANT_CHANGES;
+		}
+		// we either have local changes now, or they are not needed
+		// in both cases we continue with the downstream SCM check
+		if (!trigger.isOnlyIfSCMChanges()) {
+			return Check.NO_POLL_NEEDED;
+		}
+		// Downstream project locks workspace while building.
+		// If polled synchronously this could make the upstream build
+		// lock for a possibly long time.
+		// See HUDSON-5406
+		return getDownstreamProject().getScm().requiresWorkspaceForPolling() ? Check.ASYNC_POLL : Check.INLINE_POLL;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private Outcome evaluate(AbstractBuild build, Result result, TaskListener listener, List<Action> actions) {
+		AbstractProject p = getDownstreamProject();
+		switch (check(build, result)) {
+		case ALREADY_TRIGGERED:
+			return Outcome.ALREADY_TRIGGERED;
+		case CONDITION_NOT_MET:
+			listener.getLogger().println(Messages.DownstreamTrigger_ConditionNotMet(
+					trigger.getStrategy().getDisplayName(), trigger.getThreshold()));
+			return Outcome.CONDITION_NOT_MET;
+		case NO_LOCAL_CHANGES:
+			listener.getLogger().println(Messages.DownstreamTrigger_NoSCMChanges(build.getProject().getName()));
+			return Outcome.NO_LOCAL_CHANGES;
+		case NO_RELEVANT_CHANGES:
+			listener.getLogger().println(Messages.DownstreamTrigger_NoRelevantChanges(
+					build.getProject().getName(), p.getName()));
+			return Outcome.NO_RELEVANT_CHANGES;
+		case NO_POLL_NEEDED:
+			return Outcome.TRIGGERED;
+		case ASYNC_POLL:
+			listener.getLogger().println(Messages.DownstreamTrigger_StartedAsynchPoll(p.getName()));
+			Runnable run = getPoller(p, new Cause.UpstreamCause((Run<?,?>)build), actions);
+			DownstreamTrigger.executeForProject(p, run, trigger.getPollPriority());
+			return Outcome.ASYNC_DEFERRED;
+		default:
+			return pollInline(build, result, p, listener, actions);
+		}
+	}
+
+	/**
+	 * Polls the downstream project - which doesn't need a workspace for it - and waits for the result.
+	 */
+	@SuppressWarnings("rawtypes")
+	private Outcome pollInline(AbstractBuild build, Result result, AbstractProject p, TaskListener listener,
+			List<Action> actions) {
+		if (!PollCircuitBreaker.get().tryPoll(p)) {
+			// a poll started for this dependency by the batch would only keep a pool thread busy
+			PollBatch.release(build, this);
+			return circuitOpen(build, p, listener, actions);
+		}
+
+		TimedPoll poll = PollBatch.take(build, result, this);
+		if (poll != null || trigger.getPollTimeout() > 0) {
+			return pollWithTimeout(build, p, poll, listener, actions);
+		}
+
+		if (PollingResultCache.get().poll(p, listener).hasChanges()) {
+			return Outcome.TRIGGERED;
+		}
+		listener.getLogger().println(Messages.DownstreamTrigger_NoSCMChanges(p.getName()));
+		return Outcome.NO_SCM_CHANGES;
+	}
+
+	/**
+	 * Decides without polling, because polls of the downstream project are blocked
+	 * by the {@link PollCircuitBreaker}.
+	 */
+	@SuppressWarnings("rawtypes")
+	private Outcome circuitOpen(AbstractBuild build, AbstractProject p, TaskListener listener, List<Action> actions) {
+		PollFallback fallback = trigger.getPollTimeoutFallback();
+		listener.getLogger().println(Messages.DownstreamTrigger_CircuitOpen(p.getName(),
+				PollCircuitBreaker.get().getRemainingCoolDown(p), fallback.getDescription()));
+		switch (fallback) {
+		case TRIGGER:
+			return Outcome.TRIGGERED;
+		case ASYNC:
+			// the poller waits until the project may be polled again
+			DownstreamTrigger.executeForProject(p, getPoller(p, new Cause.UpstreamCause((Run<?,?>)build), actions),
+					trigger.getPollPriority());
+			return Outcome.ASYNC_DEFERRED;
+		default:
+			return Outcome.CIRCUIT_OPEN;
+		}
+	}
+
+	PollPriority getPollPriority() {
+		return trigger.getPollPriority();
+	}
+
+	/**
+	 * Whether the build has changes of the paths the downstream project is interested in.
+	 * True if the trigger doesn't restrict the paths for the downstream project.
+	 */
+	@SuppressWarnings("rawtypes")
+	private boolean hasRelevantChanges(AbstractBuild build) {
+		ChildPathFilter filter = trigger.getChildPathFilter(getUpstreamProject().getParent(), getDownstreamProject());
+		if (filter == null || filter.getFilter() == null) {
+			return true;
+		}
+		return LocalChangesAction.hasChanges(build, filter.getKey(), filter.getFilter());
+	}
+
+	/**
+	 * Whether evaluating this dependency for the build would poll the downstream project
+	 * and wait for the result.
+	 */
+	@SuppressWarnings("rawtypes")
+	boolean needsInlinePoll(AbstractBuild build, Result result) {
+		return check(build, result) == Check.INLINE_POLL
+			// evaluate() claims the poll from the circuit breaker - don't claim it twice
+			&& !PollCircuitBreaker.get().isOpen(getDownstreamProject());
+	}
+
+	/**
+	 * Evaluates this dependency for the build and schedules the downstream project
+	 * if applicable - like Jenkins does for the dependencies of a finished build.
+	 *
+	 * @param result
+	 *      the result to check the build result condition against
+	 */
+	@SuppressWarnings("rawtypes")
+	void trigger(AbstractBuild build, Result result, TaskListener listener) {
+		AbstractProject p = getDownstreamProject();
+		if (!p.hasPermission(Item.BUILD)) {
+			listener.getLogger().println(Messages.DownstreamTrigger_NoBuildPermission(p.getFullDisplayName()));
+			return;
+		}
+		List<Action> actions = new ArrayList<Action>();
+		if (shouldTriggerBuild(build, result, listener, actions) && mayTrigger(listener)) {
+			schedule(new TriggerRequest(new Cause.UpstreamCause((Run<?,?>)build), actions), listener);
+		}
+	}
+
+	/**
+	 * Checks what Jenkins checks before it schedules the downstream project for a positive
+	 * trigger decision. Decisions which let the build be scheduled later - on another thread -
+	 * must check it up front, while running under the authentication of the upstream build.
+	 */
+	@SuppressWarnings("rawtypes")
+	private boolean mayTrigger(TaskListener listener) {
+		AbstractProject p = getDownstreamProject();
+		if (!p.hasPermission(Item.BUILD)) {
+			listener.getLogger().println(Messages.DownstreamTrigger_NoBuildPermission(p.getFullDisplayName()));
+			return false;
+		}
+		if (p.isDisabled()) {
+			listener.getLogger().println(Messages.DownstreamTrigger_Disabled(p.getFullDisplayName()));
 			return false;
 		}
+		return true;
+	}
+
+	/**
+	 * Schedules the downstream project like Jenkins does for a positive trigger decision.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void schedule(TriggerRequest request, TaskListener listener) {
+		AbstractProject p = getDownstreamProject();
+		Boolean scheduled = ScheduleBatch.get().schedule(p, request);
+		if (!p.hasPermission(Item.READ)) {
+			// don't reveal the project to whoever reads the log
+			return;
+		}
+		if (scheduled == null) {
+			listener.getLogger().println(Messages.DownstreamTrigger_Submitted(p.getFullDisplayName()));
+		} else if (scheduled) {
+			listener.getLogger().println(Messages.DownstreamTrigger_Triggering(p.getFullDisplayName()));
+		} else {
+			listener.getLogger().println(Messages.DownstreamTrigger_InQueue(p.getFullDisplayName()));
+		}
+	}
+
+	/**
+	 * Waits for the poll of the downstream project on the asynchronous poll pool - at most
+	 * {@link DownstreamTrigger#getPollTimeout()}, if set. If the poll doesn't
+	 * finish in time, {@link DownstreamTrigger#getPollTimeoutFallback()} decides.
+	 *
+	 * @param poll
+	 *      the poll already started by a {@link PollBatch} - or null to start a new one
+	 */
+	@SuppressWarnings("rawtypes")
+	private Outcome pollWithTimeout(AbstractBuild build, AbstractProject p, TimedPoll poll,
+			TaskListener listener, List<Action> actions) {
+		PrintStream logger = listener.getLogger();
+		long start = System.nanoTime();
+		if (poll == null) {
+			poll = new TimedPoll(p);
+			DownstreamTrigger.executeForProject(p, poll, trigger.getPollPriority());
+		}
+		try {
+			PollingResult result;
+			try {
+				result = trigger.getPollTimeout() > 0
+					? poll.get(trigger.getPollTimeout(), TimeUnit.SECONDS)
+					: poll.get();
+			} catch (TimeoutException e) {
+				PollFallback fallback = trigger.getPollTimeoutFallback();
+				logger.println(Messages.DownstreamTrigger_PollTimedOut(p.getName(),
+						trigger.getPollTimeout(), fallback.getDescription()));
+				if (fallback == PollFallback.ASYNC) {
+					if (!mayTrigger(listener)) {
+						// the poll would schedule the build without the checks of Jenkins
+						poll.cancel(true);
+						return Outcome.REFUSED;
+					}
+					if (poll.deferTo(new TriggerRequest(new Cause.UpstreamCause((Run<?,?>)build), actions),
+							trigger.getDebounceWindow())) {
+						return Outcome.ASYNC_DEFERRED;
+					}
+					// finished just now
+					result = poll.get();
+				} else {
+					// don't keep a pool thread busy with a poll nobody waits for
+					poll.cancel(true);
+					return fallback == PollFallback.TRIGGER ? Outcome.TRIGGERED : Outcome.POLL_TIMED_OUT;
+				}
+			}
+			logger.println(Messages.DownstreamTrigger_PollLatency(p.getName(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+			if (result.hasChanges()) {
+				return Outcome.TRIGGERED;
+			}
+			logger.println(Messages.DownstreamTrigger_NoSCMChanges(p.getName()));
+			return Outcome.NO_SCM_CHANGES;
+		} catch (ExecutionException e) {
+			LOGGER.log(Level.WARNING, "Polling " + p.getName() + " for SCM changes failed", e.getCause());
+			logger.println(Messages.DownstreamTrigger_PollFailed(p.getName(), e.getCause()));
+			return Outcome.POLL_FAILED;
+		} catch (CancellationException e) {
+			// dropped by the poll pool, because too many polls were waiting
+			logger.println(Messages.DownstreamTrigger_PollDropped(p.getName()));
+			return Outcome.POLL_FAILED;
+		} catch (InterruptedException e) {
+			poll.cancel(true);
+			Thread.currentThread().interrupt();
+			return Outcome.POLL_FAILED;
+		}
 	}
 
 	// Technically it'd be safe to not override equals
@@ -106,46 +390,368 @@ public class DownstreamDependency extends Dependency {
 	
 	@SuppressWarnings("rawtypes")
 	Runnable getPoller(AbstractProject p, Cause cause, List<Action> actions) {
-		return new PollRunner(p, cause, actions);
+		return new PollRunner(p, cause, actions, trigger.getPollPriority(), trigger.getDebounceWindow());
 	}
 	
+	/**
+	 * A poll whose result an upstream build waits for - possibly with a time limit.
+	 * <p>
+	 * If the upstream build gives up waiting, the poll can be told to schedule
+	 * the downstream build itself when it finishes with changes.
+	 */
+	@SuppressWarnings("rawtypes")
+	static class TimedPoll extends FutureTask<PollingResult> {
+
+		private final AbstractProject project;
+		private TriggerRequest deferred;
+		private int deferredDebounceWindow;
+		private boolean finished;
+
+		/**
+		 * Polls which are completed with the result of this one instead of polling themselves.
+		 */
+		private List<TimedPoll> followers;
+
+		private Runnable onDone;
+
+		TimedPoll(final AbstractProject p) {
+			super(() -> {
+				TaskListener listener = PollingLog.open(p);
+				try {
+					listener.getLogger().println("Started on " + new Date() + " for an upstream build waiting for the result");
+					return PollingResultCache.get().poll(p, listener);
+				} finally {
+					PollingLog.close(listener);
+				}
+			});
+			this.project = p;
+		}
+
+		AbstractProject getProject() {
+			return this.project;
+		}
+
+		/**
+		 * Completes the other - not yet started - poll with the result of this one.
+		 *
+		 * @return false if this poll has already finished
+		 */
+		synchronized boolean addFollower(TimedPoll other) {
+			if (this.finished) {
+				return false;
+			}
+			if (this.followers == null) {
+				this.followers = new ArrayList<TimedPoll>(1);
+			}
+			this.followers.add(other);
+			return true;
+		}
+
+		/**
+		 * Sets a task to run when this poll is done - no matter how.
+		 * Runs it right away, if the poll is already done.
+		 */
+		void onDone(Runnable task) {
+			synchronized (this) {
+				if (!this.finished) {
+					this.onDone = task;
+					return;
+				}
+			}
+			task.run();
+		}
+
+		/**
+		 * Lets this poll schedule a build for the request, if it finds changes.
+		 *
+		 * @param debounceWindow
+		 *      quiet window of the trigger - see {@link TriggerDebouncer}
+		 * @return false if the poll has already finished. The caller must evaluate the result then
+		 */
+		synchronized boolean deferTo(TriggerRequest request, int debounceWindow) {
+			if (this.finished) {
+				return false;
+			}
+			this.deferred = request;
+			this.deferredDebounceWindow = debounceWindow;
+			return true;
+		}
+
+		@Override
+		protected void done() {
+			TriggerRequest request;
+			int debounceWindow;
+			List<TimedPoll> followers;
+			Runnable onDone;
+			synchronized (this) {
+				this.finished = true;
+				request = this.deferred;
+				debounceWindow = this.deferredDebounceWindow;
+				followers = this.followers;
+				onDone = this.onDone;
+			}
+			if (followers != null) {
+				for (TimedPoll follower : followers) {
+					follower.completeWith(this);
+				}
+			}
+			if (onDone != null) {
+				onDone.run();
+			}
+			if (request == null || isCancelled()) {
+				return;
+			}
+			try {
+				if (get().hasChanges()) {
+					LOGGER.fine("SCM changes found for " + this.project.getName() + ". Triggering build.");
+					TriggerDebouncer.get().submit(this.project, request, debounceWindow);
+				} else {
+					LOGGER.fine(Messages.DownstreamTrigger_NoSCMChanges(this.project.getName()));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				LOGGER.log(Level.WARNING, "Polling " + this.project.getName() + " for SCM changes failed", e.getCause());
+			}
+		}
+
+		private void completeWith(TimedPoll leader) {
+			if (leader.isCancelled()) {
+				cancel(false);
+				return;
+			}
+			try {
+				set(leader.get());
+			} catch (ExecutionException e) {
+				setException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Polls the downstream project and schedules a build if there are changes.
+	 * <p>
+	 * Pending runners for the same project are merged by {@link AsyncPollExecutor} - or by
+	 * {@link AgentPollBatch}, if polls are batched per agent -
+	 * so a burst of upstream builds results in only one poll and one scheduled build
+	 * which carries all upstream causes.
+	 */
 	@SuppressWarnings("rawtypes")
-	private static class PollRunner implements Runnable {
+	static class PollRunner implements Runnable {
+
+		/**
+		 * Seconds to wait for the node of a workspace to come online.
+		 */
+		private static final long WORKSPACE_RETRY = 60;
+
+		/**
+		 * Runners waiting for a project to be polled again - at most one per project.
+		 */
+		private static final Map<AbstractProject<?, ?>, PollRunner> PARKED = new HashMap<AbstractProject<?, ?>, PollRunner>();
 
 		private final AbstractProject project;
-		private final Cause cause;
-		private final List<Action> buildActions;
-		private final TaskListener taskListener;
+		private final TriggerRequest request;
+
+		/**
+		 * Highest priority of this runner and all runners merged into it.
+		 */
+		private PollPriority priority;
+
+		/**
+		 * Longest quiet window of the triggers of this runner and all runners merged into it.
+		 */
+		private int debounceWindow;
+
+		/**
+		 * Ids of this runner and all runners merged into it in the {@link PollJournal}.
+		 */
+		private final List<Long> journalIds = new ArrayList<Long>(1);
 
 		public PollRunner(AbstractProject p, Cause cause, List<Action> actions) {
+			this(p, cause, actions, PollPriority.NORMAL, 0);
+		}
+
+		PollRunner(AbstractProject p, Cause cause, List<Action> actions, PollPriority priority, int debounceWindow) {
 			this.project = p;
-			this.cause = cause;
-			this.buildActions = actions;
-			// workaround for HUDSON-5406:
-			// some (all?) SCMs require a serializable TaskListener for AbstractProject#pollSCMChanges
-			// LogTaskListener is not serializable (at least not up until Hudson 1.352)
-			TaskListener tl = new LogTaskListener(LOGGER, Level.INFO);
-			if (tl instanceof Serializable) {
-			    this.taskListener = tl;
-			} else {
-			    this.taskListener = StreamTaskListener.fromStdout();
+			this.priority = priority;
+			this.debounceWindow = debounceWindow;
+			this.request = new TriggerRequest(cause, actions);
+			long id = PollJournal.get().add(p, priority, debounceWindow, this.request.getCauses());
+			if (id != PollJournal.NONE) {
+				this.journalIds.add(id);
 			}
 		}
-		
+
+		/**
+		 * Creates a runner for polls which are already journaled.
+		 */
+		PollRunner(AbstractProject p, List<Cause> causes, List<Long> journalIds, PollPriority priority,
+				int debounceWindow) {
+			this.project = p;
+			this.priority = priority;
+			this.debounceWindow = debounceWindow;
+			this.request = new TriggerRequest(causes.get(0), Collections.<Action>emptyList());
+			for (Cause cause : causes) {
+				this.request.merge(new TriggerRequest(cause, Collections.<Action>emptyList()));
+			}
+			this.journalIds.addAll(journalIds);
+		}
+
+		AbstractProject getProject() {
+			return this.project;
+		}
+
+		synchronized PollPriority getPriority() {
+			return this.priority;
+		}
+
+		synchronized int getDebounceWindow() {
+			return this.debounceWindow;
+		}
+
+		/**
+		 * Merges the other - not yet started - runner into this one.
+		 *
+		 * @return true if the runners have been merged, false if they are for different projects
+		 */
+		boolean merge(PollRunner other) {
+			if (other.project != this.project) {
+				return false;
+			}
+			this.request.merge(other.request);
+			this.journalIds.addAll(other.journalIds);
+			PollPriority otherPriority = other.getPriority();
+			int otherDebounceWindow = other.getDebounceWindow();
+			synchronized (this) {
+				if (otherPriority.compareTo(this.priority) > 0) {
+					this.priority = otherPriority;
+				}
+				this.debounceWindow = Math.max(this.debounceWindow, otherDebounceWindow);
+			}
+			LOGGER.fine("Merged pending SCM poll for " + this.project.getName());
+			return true;
+		}
+
+		/**
+		 * Gives up this runner - because too many polls are waiting for the project
+		 * or the project has been deleted.
+		 */
+		void drop() {
+			LOGGER.fine("Dropped pending SCM poll for " + this.project.getName() + " for "
+					+ this.request.getCauses().size() + " upstream build(s)");
+			PollJournal.get().done(this.journalIds);
+		}
+
 		public void run() {
-		    LOGGER.info("Polling for SCM changes in " + this.project.getName());
-		    PollingResult pollingResult = this.project.poll(this.taskListener);
+			// before claiming the poll from the circuit breaker - the probe would be lost while parked
+			if (isWorkspaceOffline()) {
+				// Jenkins would report no changes - e.g. right after a restart - and the build would be lost
+				LOGGER.fine("Postponing SCM poll for " + this.project.getName() + " by " + WORKSPACE_RETRY
+						+ " seconds until the node with its workspace is online");
+				park(WORKSPACE_RETRY);
+				return;
+			}
+			if (!PollCircuitBreaker.get().tryPoll(this.project)) {
+				long delay = Math.max(1, PollCircuitBreaker.get().getRemainingCoolDown(this.project));
+				LOGGER.fine("Postponing SCM poll for " + this.project.getName() + " by " + delay
+						+ " seconds after repeated failed or slow polls");
+				park(delay);
+				return;
+			}
+			TaskListener listener = PollingLog.open(this.project);
+			try {
+				run(listener.getLogger(), listener);
+			} finally {
+				PollingLog.close(listener);
+				PollJournal.get().done(this.journalIds);
+			}
+		}
+
+		/**
+		 * Whether the project needs a workspace for polling and the node of its workspace
+		 * is known, but offline.
+		 */
+		private boolean isWorkspaceOffline() {
+			if (!this.project.getScm().requiresWorkspaceForPolling()) {
+				return false;
+			}
+			AbstractBuild build = this.project.getSomeBuildWithWorkspace();
+			if (build == null) {
+				build = this.project.getLastBuild();
+			}
+			Node node = build != null ? build.getBuiltOn() : null;
+			if (node == null) {
+				// never built or the node is gone: Jenkins decides whether to build for a workspace
+				return false;
+			}
+			Computer computer = node.toComputer();
+			return computer == null || computer.isOffline();
+		}
+
+		/**
+		 * Queues this runner again after the delay. Runners parked for the same project
+		 * meanwhile are merged into it, so waiting doesn't pile up runners.
+		 */
+		private void park(long delaySeconds) {
+			synchronized (PARKED) {
+				PollRunner parked = PARKED.get(this.project);
+				if (parked != null) {
+					parked.merge(this);
+					return;
+				}
+				PARKED.put(this.project, this);
+			}
+			Timer.get().schedule(() -> {
+				synchronized (PARKED) {
+					if (!PARKED.remove(this.project, this)) {
+						// the project has been deleted
+						return;
+					}
+				}
+				DownstreamTrigger.executeForProject(this.project, this, getPriority());
+			}, delaySeconds, TimeUnit.SECONDS);
+		}
+
+		/**
+		 * Gives up the parked runner of a deleted project.
+		 */
+		static void unpark(AbstractProject<?, ?> project) {
+			PollRunner parked;
+			synchronized (PARKED) {
+				parked = PARKED.remove(project);
+			}
+			if (parked != null) {
+				parked.drop();
+			}
+		}
+
+		private void run(PrintStream logger, TaskListener listener) {
+			long start = System.currentTimeMillis();
+			logger.println("Started on " + new Date(start) + " for " + this.request.getCauses().size() + " upstream build(s)");
+			for (Cause cause : this.request.getCauses()) {
+				logger.println(cause.getShortDescription());
+			}
+			LOGGER.fine("Polling for SCM changes in " + this.project.getName());
+			PollingResult pollingResult = PollingResultCache.get().poll(this.project, listener);
 			if(pollingResult.hasChanges()) {
-				LOGGER.info("SCM changes found for " + this.project.getName() + ". Triggering build.");
-				if (this.project.scheduleBuild(this.project.getQuietPeriod(), this.cause,
-                        buildActions.toArray(new Action[buildActions.size()]))) {
-					LOGGER.info("Build of " + this.project.getName() + " scheduled successfully.");
+				logger.println("SCM changes found for " + this.project.getName() + ". Triggering build.");
+				int window = getDebounceWindow();
+				Boolean scheduled = TriggerDebouncer.get().submit(this.project, this.request, window);
+				if (window > 0) {
+					logger.println(Messages.DownstreamTrigger_Debounced(this.project.getName(), window));
+				} else if (scheduled == null) {
+					logger.println("Build of " + this.project.getName() + " submitted to the queue together with other triggered builds.");
+				} else if (scheduled) {
+					logger.println("Build of " + this.project.getName() + " scheduled successfully.");
 				} else {
-					LOGGER.info("No build of " + this.project.getName() + " scheduled - this usually means that another build is already in the queue.");
+					logger.println("No build of " + this.project.getName() + " scheduled - this usually means that another build is already in the queue.");
 				}
 			} else {
-				LOGGER.info(Messages.DownstreamTrigger_NoSCMChanges(this.project.getName()));
+				logger.println(Messages.DownstreamTrigger_NoSCMChanges(this.project.getName()));
 			}
+			logger.println("Done. Took " + Util.getTimeSpanString(System.currentTimeMillis() - start));
 		}
 	}
 }
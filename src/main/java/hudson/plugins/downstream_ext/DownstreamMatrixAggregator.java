@@ -0,0 +1,82 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Launcher;
+import hudson.matrix.MatrixAggregator;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.tasks.BuildTrigger;
+
+import java.io.IOException;
+
+/**
+ * Triggers the downstream projects of a matrix parent build.
+ * <p>
+ * For {@link MatrixTrigger#ONLY_PARENT_WHEN_DECIDED} the results of the configurations
+ * are combined as they finish. As soon as they decide the build result condition,
+ * the downstream projects are triggered - or not - without waiting for the
+ * remaining configurations.
+ */
+class DownstreamMatrixAggregator extends MatrixAggregator {
+
+	private final DownstreamTrigger trigger;
+
+	/**
+	 * Worst result of all configurations finished so far.
+	 */
+	private Result resultSoFar = Result.SUCCESS;
+
+	private boolean decided;
+
+	DownstreamMatrixAggregator(MatrixBuild build, Launcher launcher, BuildListener listener,
+			DownstreamTrigger trigger) {
+		super(build, launcher, listener);
+		this.trigger = trigger;
+	}
+
+	@Override
+	public boolean endRun(MatrixRun run) throws InterruptedException, IOException {
+		if (trigger.getMatrixTrigger() != MatrixTrigger.ONLY_PARENT_WHEN_DECIDED
+			|| decided || run.getResult() == null) {
+			return true;
+		}
+
+		resultSoFar = resultSoFar.combine(run.getResult());
+		Boolean conditionMet = trigger.getStrategy().evaluateEarly(trigger.getThreshold(), resultSoFar);
+		if (conditionMet != null) {
+			decided = true;
+			if (conditionMet.booleanValue()) {
+				triggerEarly();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endBuild() throws InterruptedException, IOException {
+		MatrixTrigger matrixTrigger = trigger.getMatrixTrigger();
+		if (matrixTrigger == MatrixTrigger.ONLY_PARENT
+			|| matrixTrigger == MatrixTrigger.BOTH
+			|| matrixTrigger == MatrixTrigger.ONLY_PARENT_WHEN_DECIDED) {
+			// trigger downstream job once
+			// (already triggered downstream jobs are skipped - see EarlyTriggerAction)
+			return BuildTrigger.execute(build, listener);
+		}
+		return true;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private void triggerEarly() {
+		listener.getLogger().println(Messages.DownstreamTrigger_DecidedEarly(
+				trigger.getStrategy().getDisplayName(), trigger.getThreshold(), resultSoFar));
+
+		AbstractProject<?, ?> owner = build.getProject();
+		for (AbstractProject downstream : trigger.getChildProjects(owner.getParent())) {
+			new DownstreamDependency(owner, downstream, trigger).trigger(build, resultSoFar, listener);
+		}
+		// Jenkins evaluates the dependencies again when the build has finished
+		build.addAction(new EarlyTriggerAction());
+	}
+}
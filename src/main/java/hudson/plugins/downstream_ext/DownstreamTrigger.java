@@ -28,8 +28,8 @@ import hudson.Launcher;
 import hudson.Util;
 import hudson.matrix.MatrixAggregatable;
 import hudson.matrix.MatrixAggregator;
-import hudson.matrix.MatrixConfiguration;
 import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixConfiguration;
 import hudson.matrix.MatrixProject;
 import hudson.model.AutoCompletionCandidates;
 import hudson.model.BuildListener;
@@ -39,27 +39,26 @@ import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Items;
 import hudson.model.Result;
+import hudson.model.TaskListener;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
-import hudson.model.Job;
-import hudson.model.Project;
 import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
 import hudson.plugins.downstream_ext.DownstreamTrigger.DescriptorImpl.ItemListenerImpl;
+import hudson.security.ACL;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Messages;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.tasks.BuildTrigger;
 import hudson.util.FormValidation;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import jenkins.model.DependencyDeclarer;
 import jenkins.model.Jenkins;
@@ -68,6 +67,7 @@ import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -80,13 +80,27 @@ import org.kohsuke.stapler.StaplerRequest;
 @SuppressWarnings("rawtypes")
 public class DownstreamTrigger extends Notifier implements DependencyDeclarer, MatrixAggregatable {
 
-    private static final Logger LOGGER = Logger.getLogger(DownstreamTrigger.class.getName());
-    
     /**
      * Comma-separated list of other projects to be scheduled.
      */
     private String childProjects;
 
+    /**
+     * {@link #childProjects} split into the single - trimmed - project names.
+     */
+    private transient volatile List<String> childProjectNames;
+
+    /**
+     * Child projects as last resolved by {@link #getChildProjects(ItemGroup)}.
+     */
+    private transient volatile ResolvedChildProjects resolvedChildProjects;
+
+    /**
+     * Changed whenever an item is created, renamed, moved or deleted,
+     * so that resolved child projects are known to be outdated.
+     */
+    private static final AtomicLong itemsGeneration = new AtomicLong();
+
     /**
      * Threshold status to trigger other builds.
      */
@@ -121,9 +135,57 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
 	 * @since 1.6
 	 */
 	private MatrixTrigger matrixTrigger;
-    
-    private static final ConcurrentHashMap<AbstractProject<?, ?>, Executor> executors =
-    	new ConcurrentHashMap<AbstractProject<?,?>, Executor>();
+
+	/**
+	 * Maximum time in seconds to wait for the SCM poll of a downstream project
+	 * which doesn't need a workspace for polling.
+	 * 0 means that the poll is done inline without any time limit.
+	 *
+	 * @see #pollTimeoutFallback
+	 */
+	private int pollTimeout;
+
+	/**
+	 * Defines what to do if the poll didn't finish in {@link #pollTimeout}.
+	 */
+	private PollFallback pollTimeoutFallback;
+
+	/**
+	 * Seconds to hold back a triggered downstream build, so that it can be merged with
+	 * the builds triggered by other upstream builds in the meantime. 0 means no delay.
+	 */
+	private int debounceWindow;
+
+	/**
+	 * Comma separated Ant-style patterns of the paths whose changes count as local SCM changes.
+	 * Empty for all paths.
+	 *
+	 * @see #onlyIfLocalSCMChanges
+	 */
+	private String localChangesFilter;
+
+	/**
+	 * Child projects which are only triggered by changes of certain paths in the upstream build.
+	 */
+	private List<ChildPathFilter> childPathFilters;
+
+	/**
+	 * Priority of the asynchronous SCM polls of the child projects.
+	 */
+	private PollPriority pollPriority;
+
+	/**
+	 * The results which meet the build result condition - one bit per {@link Result#ordinal}.
+	 * Derived from {@link #threshold} and {@link #thresholdStrategy}.
+	 */
+	private transient int resultMask;
+
+	/**
+	 * The results which {@link #resultMask} is built from.
+	 */
+	private static final Result[] RESULTS = {
+		Result.SUCCESS, Result.UNSTABLE, Result.FAILURE, Result.NOT_BUILT, Result.ABORTED
+	};
 
     @DataBoundConstructor
     public DownstreamTrigger(String childProjects, String threshold, boolean onlyIfSCMChanges, boolean onlyIfLocalSCMChanges,
@@ -144,6 +206,7 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
         this.onlyIfLocalSCMChanges = onlyIfLocalSCMChanges;
         this.thresholdStrategy = strategy;
         this.matrixTrigger = matrixTrigger;
+        this.resultMask = computeResultMask();
     }
     
     private static Result resultFromString(String s) {
@@ -181,6 +244,87 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
        	return this.matrixTrigger;
     }
 
+    public int getPollTimeout() {
+        return pollTimeout;
+    }
+
+    @DataBoundSetter
+    public void setPollTimeout(int pollTimeout) {
+        this.pollTimeout = Math.max(0, pollTimeout);
+    }
+
+    public PollFallback getPollTimeoutFallback() {
+        if (pollTimeoutFallback == null)
+            return PollFallback.ASYNC;
+        else
+            return pollTimeoutFallback;
+    }
+
+    @DataBoundSetter
+    public void setPollTimeoutFallback(PollFallback pollTimeoutFallback) {
+        this.pollTimeoutFallback = pollTimeoutFallback;
+    }
+
+    public String getLocalChangesFilter() {
+        return localChangesFilter;
+    }
+
+    @DataBoundSetter
+    public void setLocalChangesFilter(String localChangesFilter) {
+        this.localChangesFilter = Util.fixEmptyAndTrim(localChangesFilter);
+    }
+
+    public List<ChildPathFilter> getChildPathFilters() {
+        if (childPathFilters == null)
+            return Collections.emptyList();
+        else
+            return Collections.unmodifiableList(childPathFilters);
+    }
+
+    @DataBoundSetter
+    public void setChildPathFilters(List<ChildPathFilter> childPathFilters) {
+        this.childPathFilters = childPathFilters == null || childPathFilters.isEmpty()
+            ? null : new ArrayList<ChildPathFilter>(childPathFilters);
+    }
+
+    /**
+     * Returns the path filter for the child project - if any.
+     *
+     * @param context
+     *      the item group of the upstream project
+     */
+    ChildPathFilter getChildPathFilter(ItemGroup<?> context, AbstractProject<?, ?> child) {
+        if (childPathFilters != null) {
+            for (ChildPathFilter filter : childPathFilters) {
+                if (filter.isFor(context, child)) {
+                    return filter;
+                }
+            }
+        }
+        return null;
+    }
+
+    public PollPriority getPollPriority() {
+        if (pollPriority == null)
+            return PollPriority.NORMAL;
+        else
+            return pollPriority;
+    }
+
+    @DataBoundSetter
+    public void setPollPriority(PollPriority pollPriority) {
+        this.pollPriority = pollPriority;
+    }
+
+    public int getDebounceWindow() {
+        return debounceWindow;
+    }
+
+    @DataBoundSetter
+    public void setDebounceWindow(int debounceWindow) {
+        this.debounceWindow = Math.max(0, debounceWindow);
+    }
+
     /**
      * @deprecated 
      *      Use {@link #getChildProjects(ItemGroup)}
@@ -189,14 +333,103 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
         return Items.fromNameList(childProjects,AbstractProject.class);
     }
 
+    /**
+     * Resolves the child projects relative to the given context.
+     * <p>
+     * The result is remembered until any item is created, renamed, moved or deleted.
+     * It is only remembered if resolved as {@link ACL#SYSTEM2} - like when building
+     * the dependency graph - since the visible projects depend on the permissions.
+     *
+     * @return a new list each time - empty if Jenkins isn't running
+     */
     public List<AbstractProject> getChildProjects(ItemGroup context) {
-        return Items.fromNameList(context,childProjects,AbstractProject.class);
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return new ArrayList<AbstractProject>();
+        }
+        boolean system = ACL.SYSTEM2.equals(Jenkins.getAuthentication2());
+        long generation = itemsGeneration.get();
+        ResolvedChildProjects resolved = this.resolvedChildProjects;
+        if (system && resolved != null && resolved.context == context && resolved.generation == generation) {
+            return new ArrayList<AbstractProject>(resolved.projects);
+        }
+
+        List<AbstractProject> projects = new ArrayList<AbstractProject>();
+        for (String name : getChildProjectNames()) {
+            AbstractProject project = jenkins.getItem(name, context, AbstractProject.class);
+            if (project != null) {
+                projects.add(project);
+            }
+        }
+        if (system) {
+            this.resolvedChildProjects = new ResolvedChildProjects(context, generation,
+                    Collections.unmodifiableList(new ArrayList<AbstractProject>(projects)));
+        }
+        return projects;
+    }
+
+    /**
+     * Returns the names of the child projects as configured,
+     * i.e. possibly relative to the project of this trigger.
+     */
+    List<String> getChildProjectNames() {
+        List<String> names = this.childProjectNames;
+        if (names == null) {
+            names = new ArrayList<String>();
+            StringTokenizer tokens = new StringTokenizer(childProjects, ",");
+            while (tokens.hasMoreTokens()) {
+                String name = tokens.nextToken().trim();
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+            names = Collections.unmodifiableList(names);
+            this.childProjectNames = names;
+        }
+        return names;
+    }
+
+    private static final class ResolvedChildProjects {
+        private final ItemGroup context;
+        private final long generation;
+        private final List<AbstractProject> projects;
+
+        ResolvedChildProjects(ItemGroup context, long generation, List<AbstractProject> projects) {
+            this.context = context;
+            this.generation = generation;
+            this.projects = projects;
+        }
     }
     
     public Strategy getStrategy() {
         return this.thresholdStrategy;
     }
 
+    /**
+     * Whether the result meets the build result condition made of {@link #getStrategy()}
+     * and {@link #getThreshold()}.
+     */
+    boolean isConditionMet(Result result) {
+        int ordinal = result.ordinal;
+        if (ordinal >= 0 && ordinal < RESULTS.length && RESULTS[ordinal] == result) {
+            return (this.resultMask & (1 << ordinal)) != 0;
+        }
+        // not one of the well-known results
+        return getStrategy().evaluate(getThreshold(), result);
+    }
+
+    private int computeResultMask() {
+        int mask = 0;
+        if (this.thresholdStrategy != null) {
+            for (Result result : RESULTS) {
+                if (this.thresholdStrategy.evaluate(getThreshold(), result)) {
+                    mask |= 1 << result.ordinal;
+                }
+            }
+        }
+        return mask;
+    }
+
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.NONE;
     }
@@ -211,25 +444,22 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
      * {@inheritDoc}
      */
     public void buildDependencyGraph(AbstractProject owner, DependencyGraph graph) {
-        ItemGroup context = owner.getParent();
-    	for (AbstractProject downstream : getChildProjects(context)) {
+        List<AbstractProject> childProjects = getChildProjects(owner.getParent());
+        ChildProjectsIndex.get().update(owner, this);
+    	for (AbstractProject downstream : childProjects) {
     		graph.addDependency(new DownstreamDependency(owner, downstream, this));
     	}
     	
     	// workaround for problems with Matrix projects
     	// see https://issues.jenkins-ci.org/browse/JENKINS-5508
-    	if (this.matrixTrigger != null &&
-    		(this.matrixTrigger == MatrixTrigger.ONLY_CONFIGURATIONS
-    	    || this.matrixTrigger == MatrixTrigger.BOTH)) {
-	    	if (owner instanceof MatrixProject) {
-	    		MatrixProject proj = (MatrixProject) owner;
-	    		Collection<MatrixConfiguration> activeConfigurations = proj.getActiveConfigurations();
-	    		for (MatrixConfiguration conf : activeConfigurations) {
-	    			for (AbstractProject downstream : getChildProjects(context)) {
-	    	    		graph.addDependency(new DownstreamDependency(conf, downstream, this));
-	    	    	}
-	    		}
-	    	}
+    	if (isTriggeringConfigurations() && owner instanceof MatrixProject) {
+    		MatrixProject proj = (MatrixProject) owner;
+    		Collection<MatrixConfiguration> activeConfigurations = proj.getActiveConfigurations();
+    		for (MatrixConfiguration conf : activeConfigurations) {
+    			for (AbstractProject downstream : childProjects) {
+    				graph.addDependency(new DownstreamDependency(conf, downstream, this));
+    			}
+    		}
     	}
     }
 
@@ -267,21 +497,105 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
                 b.append(p);
             }
             childProjects = b.toString();
+            childProjectNames = null;
+            resolvedChildProjects = null;
         }
 
         return changed;
     }
     
+    /**
+     * Called from {@link LocationChangeBatch} when jobs or folders have been renamed or moved.
+     *
+     * @param context
+     *      the item group of the project of this trigger
+     * @param locations
+     *      old full names to new full names, in the order of the changes
+     * @return true
+     *      if this {@link DownstreamTrigger} is changed and needs to be saved.
+     */
+    boolean onJobLocationsChanged(ItemGroup context, Map<String, String> locations) {
+        boolean changed = false;
+
+        String[] projects = childProjects.split(",");
+        for (int i = 0; i < projects.length; i++) {
+            String name = projects[i].trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            for (Map.Entry<String, String> location : locations.entrySet()) {
+                String renamed = renamedChildProject(context, name, location.getKey(), location.getValue());
+                if (!renamed.equals(name)) {
+                    name = renamed;
+                    projects[i] = renamed;
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed) {
+            childProjects = StringUtils.join(projects, ',');
+            childProjectNames = null;
+            resolvedChildProjects = null;
+        }
+
+        if (childPathFilters != null) {
+            for (int i = 0; i < childPathFilters.size(); i++) {
+                ChildPathFilter filter = childPathFilters.get(i);
+                String name = filter.getChildProject();
+                for (Map.Entry<String, String> location : locations.entrySet()) {
+                    name = renamedChildProject(context, name, location.getKey(), location.getValue());
+                }
+                if (!name.equals(filter.getChildProject())) {
+                    childPathFilters.set(i, new ChildPathFilter(name, filter.getIncludes(), filter.getExcludes()));
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static String renamedChildProject(ItemGroup context, String name, String oldFullName, String newFullName) {
+        String renamed = Items.computeRelativeNamesAfterRenaming(oldFullName, newFullName, name, context);
+        if (!renamed.equals(name)) {
+            return renamed;
+        }
+        // a path may also be meant as full name - Jenkins#getItem falls back to that
+        if (name.indexOf('/') > 0 && (name.equals(oldFullName) || name.startsWith(oldFullName + "/"))) {
+            return newFullName + name.substring(oldFullName.length());
+        }
+        return name;
+    }
+
+    /**
+     * Whether finished configurations of a matrix project trigger the child projects, too.
+     */
+    boolean isTriggeringConfigurations() {
+        return this.matrixTrigger == MatrixTrigger.ONLY_CONFIGURATIONS
+            || this.matrixTrigger == MatrixTrigger.BOTH;
+    }
+
+    /**
+     * Runs the given task asynchronously on the shared poll pool.
+     * Tasks for the same project are never run in parallel.
+     *
+     * @see AsyncPollExecutor
+     */
     public static void executeForProject(AbstractProject<?, ?> project, Runnable run) {
-    	Executor executor = executors.get(project);
-    	if (executor == null) {
-    		executor = Executors.newSingleThreadExecutor();
-    		Executor old = executors.putIfAbsent(project, executor);
-    		if (old != null) {
-    			executor = old;
-    		}
+    	executeForProject(project, run, PollPriority.NORMAL);
+    }
+
+    /**
+     * Like {@link #executeForProject(AbstractProject, Runnable)}, but lets the task
+     * wait for a free thread with the given priority.
+     */
+    static void executeForProject(AbstractProject<?, ?> project, Runnable run, PollPriority priority) {
+    	if (run instanceof DownstreamDependency.PollRunner && AgentPollBatch.isEnabled()
+    			&& project.getScm().requiresWorkspaceForPolling()) {
+    		AgentPollBatch.get().execute(project, (DownstreamDependency.PollRunner) run, priority);
+    		return;
     	}
-    	executor.execute(run);
+    	AsyncPollExecutor.get().execute(project, run, priority);
     }
 
     private Object readResolve() {
@@ -296,6 +610,7 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
         		this.matrixTrigger = MatrixTrigger.ONLY_CONFIGURATIONS;
         	}
         }
+        this.resultMask = computeResultMask();
         return this;
     }
 
@@ -360,13 +675,8 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
 
         public AutoCompletionCandidates doAutoCompleteChildProjects(@QueryParameter String value) {
             AutoCompletionCandidates candidates = new AutoCompletionCandidates();
-            List<Job> jobs = Jenkins.get().getItems(Job.class);
-            for (Job job: jobs) {
-                if (job.getFullName().startsWith(value)) {
-                    if (job.hasPermission(Item.READ)) {
-                        candidates.add(job.getFullName());
-                    }
-                }
+            for (String name : JobNameIndex.get().complete(Util.fixNull(value))) {
+                candidates.add(name);
             }
             return candidates;
         }
@@ -376,13 +686,26 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
         	String matrixTrigger = formData.has("matrixTrigger") ?
         			formData.getString("matrixTrigger") : null;
 
-			return new DownstreamTrigger(formData.getString("childProjects"),
+			DownstreamTrigger trigger = new DownstreamTrigger(formData.getString("childProjects"),
 					formData.getString("threshold"),
 					formData.has("onlyIfSCMChanges") && formData.getBoolean("onlyIfSCMChanges"),
                     formData.has("onlyIfLocalSCMChanges") && formData.getBoolean("onlyIfLocalSCMChanges"),
                     formData.getString("strategy"),
 					matrixTrigger
 					);
+			trigger.setPollTimeout(formData.optInt("pollTimeout", 0));
+			trigger.setDebounceWindow(formData.optInt("debounceWindow", 0));
+			if (StringUtils.isNotBlank(formData.optString("pollTimeoutFallback"))) {
+				trigger.setPollTimeoutFallback(PollFallback.valueOf(formData.getString("pollTimeoutFallback")));
+			}
+			trigger.setLocalChangesFilter(formData.optString("localChangesFilter"));
+			if (req != null && formData.has("childPathFilters")) {
+				trigger.setChildPathFilters(req.bindJSONToList(ChildPathFilter.class, formData.get("childPathFilters")));
+			}
+			if (StringUtils.isNotBlank(formData.optString("pollPriority"))) {
+				trigger.setPollPriority(PollPriority.valueOf(formData.getString("pollPriority")));
+			}
+			return trigger;
         }
         
         public boolean isMatrixProject(AbstractProject project) {
@@ -392,28 +715,85 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
         @Extension
         public static class ItemListenerImpl extends ItemListener {
             @Override
-            public void onRenamed(Item item, String oldName, String newName) {
-                // update DownstreamTrigger of other projects that point to this object.
-                // can't we generalize this?
-                for( Project<?,?> p : Jenkins.get().getAllItems(Project.class) ) {
-                    DownstreamTrigger t = p.getPublishersList().get(DownstreamTrigger.class);
-                    if(t!=null) {
-                        if(t.onJobRenamed(oldName,newName)) {
-                            try {
-                                p.save();
-                            } catch (IOException e) {
-                                LOGGER.log(Level.WARNING, "Failed to persist project setting during rename from "+oldName+" to "+newName,e);
-                            }
-                        }
-                    }
+            public void onCreated(Item item) {
+                itemsGeneration.incrementAndGet();
+                JobNameIndex.get().add(item);
+                if (item instanceof AbstractProject) {
+                    ChildProjectsIndex.get().update((AbstractProject) item);
                 }
             }
 
+            @Override
+            public void onCopied(Item src, Item item) {
+                itemsGeneration.incrementAndGet();
+                JobNameIndex.get().add(item);
+                if (item instanceof AbstractProject) {
+                    ChildProjectsIndex.get().update((AbstractProject) item);
+                }
+            }
+
+            @Override
+            public void onUpdated(Item item) {
+                if (item instanceof AbstractProject) {
+                    ChildProjectsIndex.get().update((AbstractProject) item);
+                }
+            }
+
+            @Override
+            public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+                itemsGeneration.incrementAndGet();
+                // relative child project names may point somewhere else now
+                ChildProjectsIndex.get().remove(oldFullName);
+                JobNameIndex.get().remove(oldFullName);
+                JobNameIndex.get().add(item);
+                if (item instanceof AbstractProject) {
+                    ChildProjectsIndex.get().update((AbstractProject) item);
+                }
+                // update DownstreamTrigger of other projects that point to this object.
+                // Called for all items inside of a renamed folder, so collect them first
+                LocationChangeBatch.get().add(oldFullName, newFullName);
+            }
+
+            @Override
+            public void onLoaded() {
+                itemsGeneration.incrementAndGet();
+                ChildProjectsIndex.get().rebuild();
+                JobNameIndex.get().rebuild();
+            }
+
+            @Override
+            public void onRenamed(Item item, String oldName, String newName) {
+                // handled - together with moves - by onLocationChanged
+                itemsGeneration.incrementAndGet();
+            }
+
 			@Override
 			public void onDeleted(Item item) {
-				executors.remove(item);
+				itemsGeneration.incrementAndGet();
+				ChildProjectsIndex.get().remove(item.getFullName());
+				JobNameIndex.get().remove(item.getFullName());
+				if (item instanceof AbstractProject) {
+					// before the queue is removed, so a dropped round doesn't pick the project again
+					AgentPollBatch.get().remove((AbstractProject<?, ?>) item);
+					AsyncPollExecutor.get().remove((AbstractProject<?, ?>) item);
+					DownstreamDependency.PollRunner.unpark((AbstractProject<?, ?>) item);
+					PollingResultCache.get().invalidate((AbstractProject<?, ?>) item);
+					TriggerMetrics.get().remove((AbstractProject<?, ?>) item);
+					TriggerDebouncer.get().remove((AbstractProject<?, ?>) item);
+					PollCircuitBreaker.get().remove((AbstractProject<?, ?>) item);
+					ScheduleBatch.get().remove((AbstractProject<?, ?>) item);
+				}
 			}
         }
+
+        @Extension
+        public static class RunListenerImpl extends RunListener<AbstractBuild> {
+            @Override
+            public void onCompleted(AbstractBuild build, TaskListener listener) {
+                // all dependencies of the build have been evaluated - nobody takes the remaining polls
+                PollBatch.remove(build);
+            }
+        }
     }
 
     public enum Strategy {
@@ -434,6 +814,11 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
 			public boolean evaluate(Result threshold, Result actualResult) {
 				return actualResult.isWorseOrEqualTo(threshold);
 			}
+
+			@Override
+			public Boolean evaluateEarly(Result threshold, Result resultSoFar) {
+				return resultSoFar.isWorseOrEqualTo(threshold) ? Boolean.TRUE : null;
+			}
 		};
         
         public final String displayName;
@@ -447,26 +832,26 @@ public class DownstreamTrigger extends Notifier implements DependencyDeclarer, M
         }
         
         public abstract boolean evaluate(Result threshold, Result actualResult);
+
+        /**
+         * Evaluates the condition for a build which is still running, but whose
+         * result can't get any better than the given one.
+         *
+         * @return the result of {@link #evaluate} if it's already known - {@code null} otherwise
+         */
+        public Boolean evaluateEarly(Result threshold, Result resultSoFar) {
+            return resultSoFar.isWorseThan(threshold) ? Boolean.FALSE : null;
+        }
     }
 
     /**
      * This method is invoked only by matrix projects and is used to allow a matrix job to fire a
-     * downstream job only when it ends, instead of starting them for every matrix configuration.
+     * downstream job only when it ends - or when the result condition is decided -
+     * instead of starting them for every matrix configuration.
      * 
      */
 	public MatrixAggregator createAggregator(MatrixBuild build,
 			Launcher launcher, BuildListener listener) {
-		return new MatrixAggregator(build, launcher, listener) {
-            @Override
-            public boolean endBuild() throws InterruptedException, IOException {
-            	if (matrixTrigger != null &&
-            		(matrixTrigger == MatrixTrigger.ONLY_PARENT
-                	 || matrixTrigger == MatrixTrigger.BOTH)) {
-            		// trigger downstream job once
-            		return hudson.tasks.BuildTrigger.execute(build,listener);
-            	}
-            	return true;
-            }
-        };
+		return new DownstreamMatrixAggregator(build, launcher, listener, this);
 	}
 }
@@ -0,0 +1,12 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.InvisibleAction;
+
+/**
+ * Marks a matrix parent build whose downstream projects have already been triggered
+ * before the build finished.
+ *
+ * @see MatrixTrigger#ONLY_PARENT_WHEN_DECIDED
+ */
+public class EarlyTriggerAction extends InvisibleAction {
+}
@@ -0,0 +1,110 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import jenkins.model.Jenkins;
+
+import org.springframework.security.core.Authentication;
+
+/**
+ * Sorted full names of all jobs - in all folders - for autocompletion of child projects.
+ * <p>
+ * Kept up to date from item listener events, so a lookup is a range scan over the names
+ * with the typed prefix. Permissions are only checked for the jobs which are returned.
+ */
+final class JobNameIndex {
+
+	/**
+	 * Maximum number of names returned by {@link #complete}.
+	 */
+	static final int MAX_CANDIDATES = 20;
+
+	/**
+	 * Maximum number of names checked for permission by {@link #complete}, so that
+	 * a user who may only see a few of many matching jobs doesn't cause a long scan.
+	 */
+	private static final int MAX_CHECKED = 10 * MAX_CANDIDATES;
+
+	private static final JobNameIndex INSTANCE = new JobNameIndex();
+
+	private final ConcurrentSkipListSet<String> names = new ConcurrentSkipListSet<String>();
+
+	private volatile boolean built;
+
+	static JobNameIndex get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Indexes all jobs from scratch.
+	 */
+	@SuppressWarnings("rawtypes")
+	synchronized void rebuild() {
+		List<String> all = new ArrayList<String>();
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			for (Job job : Jenkins.get().allItems(Job.class)) {
+				if (isIndexed(job)) {
+					all.add(job.getFullName());
+				}
+			}
+		}
+		this.names.clear();
+		this.names.addAll(all);
+		this.built = true;
+	}
+
+	void add(Item item) {
+		if (isIndexed(item)) {
+			this.names.add(item.getFullName());
+		}
+	}
+
+	/**
+	 * Removes the item with the given full name and - if it's a folder - all items in it.
+	 */
+	void remove(String fullName) {
+		this.names.remove(fullName);
+		this.names.subSet(fullName + '/', true, fullName + (char) ('/' + 1), false).clear();
+	}
+
+	private static boolean isIndexed(Item item) {
+		// configurations can't be triggered on their own
+		return item instanceof Job && !(item instanceof MatrixConfiguration);
+	}
+
+	/**
+	 * Returns the full names of the jobs starting with the prefix which the current user may see.
+	 */
+	@SuppressWarnings("rawtypes")
+	List<String> complete(String prefix) {
+		if (!this.built) {
+			rebuild();
+		}
+		List<String> candidates = new ArrayList<String>();
+		NavigableSet<String> matching = this.names.tailSet(prefix, true);
+		int checked = 0;
+		Authentication user = Jenkins.getAuthentication2();
+		// looked up as system: the lookup fails for jobs the user may discover, but not read
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			for (String name : matching) {
+				if (!name.startsWith(prefix) || candidates.size() >= MAX_CANDIDATES || checked++ >= MAX_CHECKED) {
+					break;
+				}
+				Job job = Jenkins.get().getItemByFullName(name, Job.class);
+				if (job != null && job.hasPermission2(user, Item.READ)) {
+					candidates.add(name);
+				}
+			}
+		}
+		return candidates;
+	}
+}
@@ -0,0 +1,68 @@
+package hudson.plugins.downstream_ext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Counts durations in a fixed set of buckets.
+ * Lock-free, so it can be updated from many threads at the same time.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class LatencyHistogram {
+
+	/**
+	 * Upper bounds (inclusive) of the buckets in milliseconds.
+	 * The last bucket has no upper bound.
+	 */
+	private static final long[] BOUNDS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long millis) {
+		int i = 0;
+		while (i < BOUNDS.length && millis > BOUNDS[i]) {
+			i++;
+		}
+		this.buckets.incrementAndGet(i);
+		this.count.increment();
+		this.total.add(millis);
+		this.max.accumulateAndGet(millis, Math::max);
+	}
+
+	@Exported
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	@Exported
+	public long getTotalMillis() {
+		return this.total.sum();
+	}
+
+	@Exported
+	public long getMaxMillis() {
+		return this.max.get();
+	}
+
+	/**
+	 * Number of durations per bucket, keyed by the upper bound of the bucket in milliseconds.
+	 */
+	@Exported
+	public Map<String, Long> getBuckets() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < BOUNDS.length; i++) {
+			result.put(String.valueOf(BOUNDS[i]), this.buckets.get(i));
+		}
+		result.put("+Inf", this.buckets.get(BOUNDS.length));
+		return result;
+	}
+}
@@ -0,0 +1,100 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.InvisibleAction;
+import hudson.scm.ChangeLogSet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers whether a build has SCM changes - optionally only changes of certain paths -
+ * so that the change log of the build is read at most once, no matter how many
+ * downstream projects check for local changes.
+ * <p>
+ * A build with an empty change log file has no changes
+ * and its change log isn't parsed at all.
+ *
+ * @see DownstreamTrigger#isOnlyIfLocalSCMChanges()
+ */
+public final class LocalChangesAction extends InvisibleAction {
+
+	/**
+	 * Guards adding the action to a build - not the build itself, which Jenkins locks for other purposes.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Whether the build has changes, by the patterns of the path filter.
+	 * The empty key stands for all paths.
+	 */
+	private final Map<String, Boolean> changes = new HashMap<String, Boolean>();
+
+	/**
+	 * Whether the build has SCM changes of paths accepted by the filter.
+	 *
+	 * @param pathFilter
+	 *      comma separated Ant-style patterns - see {@link PathFilter}. Empty or null for all paths
+	 */
+	@SuppressWarnings("rawtypes")
+	static boolean hasChanges(AbstractBuild build, String pathFilter) {
+		pathFilter = Util.fixNull(pathFilter).trim();
+		return hasChanges(build, pathFilter, PathFilter.compile(pathFilter));
+	}
+
+	/**
+	 * Whether the build has SCM changes of paths accepted by the filter.
+	 *
+	 * @param key
+	 *      identifies the patterns of the filter
+	 * @param filter
+	 *      null for all paths
+	 */
+	@SuppressWarnings("rawtypes")
+	static boolean hasChanges(AbstractBuild build, String key, PathFilter filter) {
+		LocalChangesAction action;
+		synchronized (LOCK) {
+			action = build.getAction(LocalChangesAction.class);
+			if (action == null) {
+				action = new LocalChangesAction();
+				build.addAction(action);
+			}
+		}
+		return action.compute(build, key, filter);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private synchronized boolean compute(AbstractBuild build, String key, PathFilter filter) {
+		Boolean result = this.changes.get(key);
+		if (result == null) {
+			result = readChanges(build, filter);
+			this.changes.put(key, result);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static boolean readChanges(AbstractBuild build, PathFilter filter) {
+		if (build.getRootDir() != null) {
+			File changeLog = new File(build.getRootDir(), "changelog.xml");
+			if (changeLog.isFile() && changeLog.length() == 0) {
+				return false;
+			}
+		}
+
+		ChangeLogSet<? extends ChangeLogSet.Entry> changeSet = build.getChangeSet();
+		if (filter == null) {
+			return !changeSet.isEmptySet();
+		}
+		for (ChangeLogSet.Entry entry : changeSet) {
+			for (String path : entry.getAffectedPaths()) {
+				if (filter.matches(path)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,111 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.init.Terminator;
+import hudson.model.AbstractProject;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Collects renamed and moved items for a short time and then updates
+ * the child projects of all affected upstream projects in one go.
+ * <p>
+ * Renaming or moving a folder reports every single item in it. Collecting them
+ * first means that each upstream project is changed and saved only once.
+ * The time to collect (in milliseconds) can be set with the system property
+ * {@code hudson.plugins.downstream_ext.LocationChangeBatch.window}.
+ */
+public final class LocationChangeBatch {
+
+	private static final Logger LOGGER = Logger.getLogger(LocationChangeBatch.class.getName());
+
+	static final long WINDOW = SystemProperties.getLong(LocationChangeBatch.class.getName() + ".window", 1000L);
+
+	private static final LocationChangeBatch INSTANCE = new LocationChangeBatch();
+
+	/**
+	 * Old full names to new full names - in the order of the changes.
+	 */
+	private final Map<String, String> locations = new LinkedHashMap<String, String>();
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	private LocationChangeBatch() {
+	}
+
+	static LocationChangeBatch get() {
+		return INSTANCE;
+	}
+
+	synchronized void add(String oldFullName, String newFullName) {
+		this.locations.put(oldFullName, newFullName);
+		if (this.scheduledFlush == null) {
+			this.scheduledFlush = Timer.get().schedule(this::flush, WINDOW, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Applies all collected changes to the affected upstream projects.
+	 */
+	@SuppressWarnings("rawtypes")
+	void flush() {
+		Map<String, String> batch;
+		synchronized (this) {
+			batch = new LinkedHashMap<String, String>(this.locations);
+			this.locations.clear();
+			this.scheduledFlush = null;
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			Set<AbstractProject> upstreams = new LinkedHashSet<AbstractProject>();
+			for (String oldFullName : batch.keySet()) {
+				upstreams.addAll(ChildProjectsIndex.get().getUpstreamProjects(oldFullName));
+			}
+
+			boolean changed = false;
+			for (AbstractProject upstream : upstreams) {
+				DownstreamTrigger trigger = (DownstreamTrigger) upstream.getPublishersList().get(DownstreamTrigger.class);
+				if (trigger != null && trigger.onJobLocationsChanged(upstream.getParent(), batch)) {
+					changed = true;
+					try {
+						upstream.save();
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Failed to persist project setting of " + upstream.getFullName()
+								+ " after renaming " + batch, e);
+					}
+				}
+				ChildProjectsIndex.get().update(upstream, trigger);
+			}
+
+			// a graph built since the rename still has the old names and misses the renamed children
+			Jenkins jenkins = Jenkins.getInstanceOrNull();
+			if (changed && jenkins != null) {
+				jenkins.rebuildDependencyGraphAsync();
+			}
+		}
+	}
+
+	/**
+	 * Don't lose collected changes when Jenkins shuts down.
+	 */
+	@Terminator
+	public static void flushOnShutdown() {
+		get().flush();
+	}
+}
@@ -3,7 +3,13 @@ package hudson.plugins.downstream_ext;
 public enum MatrixTrigger {
 	ONLY_PARENT("Trigger only the parent job"),
 	ONLY_CONFIGURATIONS("Trigger for each configuration"),
-	BOTH("Trigger for parent and each configuration");
+	BOTH("Trigger for parent and each configuration"),
+	/**
+	 * Like {@link #ONLY_PARENT}, but triggers as soon as the results of the finished
+	 * configurations decide the build result condition - e.g. on the first failed
+	 * configuration for 'equal or under FAILURE'.
+	 */
+	ONLY_PARENT_WHEN_DECIDED("Trigger only the parent job, as soon as the build result condition is decided");
 	
 	private final String description;
 
@@ -0,0 +1,204 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Matches changed paths against comma separated lists of Ant-style patterns to include
+ * and to exclude, e.g. {@code src/main/**, pom.xml}. A path matches if it matches any of
+ * the include patterns - or there are none - and none of the exclude patterns.
+ * <p>
+ * The patterns are compiled into a trie of path segments, so a path is matched against
+ * all patterns at once and literal segments cost a single hash lookup.
+ */
+final class PathFilter {
+
+	private final Node includes;
+	private final Node excludes;
+
+	private PathFilter(Node includes, Node excludes) {
+		this.includes = includes;
+		this.excludes = excludes;
+	}
+
+	/**
+	 * @return null if there are no patterns - i.e. all paths are accepted
+	 */
+	static PathFilter compile(String includes) {
+		return compile(includes, null);
+	}
+
+	/**
+	 * @return null if there are no patterns - i.e. all paths are accepted
+	 */
+	static PathFilter compile(String includes, String excludes) {
+		Node includeRoot = compileAll(includes);
+		Node excludeRoot = compileAll(excludes);
+		if (includeRoot == null && excludeRoot == null) {
+			return null;
+		}
+		return new PathFilter(includeRoot, excludeRoot);
+	}
+
+	private static Node compileAll(String patterns) {
+		Node root = null;
+		for (String pattern : Util.fixNull(patterns).split(",")) {
+			pattern = pattern.trim();
+			if (pattern.startsWith("/")) {
+				pattern = pattern.substring(1);
+			}
+			if (pattern.isEmpty()) {
+				continue;
+			}
+			if (pattern.endsWith("/")) {
+				// a directory stands for everything in it
+				pattern += "**";
+			}
+			if (root == null) {
+				root = new Node(false);
+			}
+			Node node = root;
+			for (String segment : pattern.split("/+")) {
+				node = node.child(segment);
+			}
+			node.terminal = true;
+		}
+		return root;
+	}
+
+	boolean matches(String path) {
+		String[] segments = (path.startsWith("/") ? path.substring(1) : path).split("/+");
+		return (this.includes == null || matches(this.includes, segments))
+			&& (this.excludes == null || !matches(this.excludes, segments));
+	}
+
+	private static boolean matches(Node root, String[] segments) {
+		Set<Node> states = closure(Collections.singleton(root));
+		for (String segment : segments) {
+			Set<Node> next = new HashSet<Node>();
+			for (Node node : states) {
+				node.step(segment, next);
+			}
+			if (next.isEmpty()) {
+				return false;
+			}
+			states = closure(next);
+		}
+		for (Node node : states) {
+			if (node.terminal) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the nodes reachable without consuming a segment - i.e. through {@code **}.
+	 */
+	private static Set<Node> closure(Set<Node> nodes) {
+		Set<Node> result = new HashSet<Node>(nodes);
+		List<Node> todo = new ArrayList<Node>(nodes);
+		while (!todo.isEmpty()) {
+			Node anyDirs = todo.remove(todo.size() - 1).anyDirs;
+			if (anyDirs != null && result.add(anyDirs)) {
+				todo.add(anyDirs);
+			}
+		}
+		return result;
+	}
+
+	private static final class Node {
+
+		/**
+		 * Whether this node stands for {@code **} - which matches any number of segments.
+		 */
+		private final boolean isAnyDirs;
+
+		private Map<String, Node> literals;
+		private List<Pattern> wildcards;
+		private List<Node> wildcardNodes;
+		private Node anyDirs;
+
+		/**
+		 * Whether a pattern ends here.
+		 */
+		private boolean terminal;
+
+		Node(boolean isAnyDirs) {
+			this.isAnyDirs = isAnyDirs;
+		}
+
+		Node child(String segment) {
+			if (segment.equals("**")) {
+				if (this.anyDirs == null) {
+					this.anyDirs = new Node(true);
+				}
+				return this.anyDirs;
+			}
+			if (segment.indexOf('*') < 0 && segment.indexOf('?') < 0) {
+				if (this.literals == null) {
+					this.literals = new HashMap<String, Node>();
+				}
+				return this.literals.computeIfAbsent(segment, s -> new Node(false));
+			}
+			String regex = toRegex(segment);
+			if (this.wildcards == null) {
+				this.wildcards = new ArrayList<Pattern>();
+				this.wildcardNodes = new ArrayList<Node>();
+			}
+			for (int i = 0; i < this.wildcards.size(); i++) {
+				if (this.wildcards.get(i).pattern().equals(regex)) {
+					return this.wildcardNodes.get(i);
+				}
+			}
+			Node node = new Node(false);
+			this.wildcards.add(Pattern.compile(regex));
+			this.wildcardNodes.add(node);
+			return node;
+		}
+
+		/**
+		 * Adds the nodes reached by consuming the segment.
+		 */
+		void step(String segment, Set<Node> next) {
+			if (this.isAnyDirs) {
+				next.add(this);
+			}
+			if (this.literals != null) {
+				Node node = this.literals.get(segment);
+				if (node != null) {
+					next.add(node);
+				}
+			}
+			if (this.wildcards != null) {
+				for (int i = 0; i < this.wildcards.size(); i++) {
+					if (this.wildcards.get(i).matcher(segment).matches()) {
+						next.add(this.wildcardNodes.get(i));
+					}
+				}
+			}
+		}
+
+		private static String toRegex(String segment) {
+			StringBuilder regex = new StringBuilder();
+			for (char c : segment.toCharArray()) {
+				if (c == '*') {
+					regex.append(".*");
+				} else if (c == '?') {
+					regex.append('.');
+				} else {
+					regex.append(Pattern.quote(String.valueOf(c)));
+				}
+			}
+			return regex.toString();
+		}
+	}
+}
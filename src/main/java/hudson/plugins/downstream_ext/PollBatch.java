@@ -0,0 +1,194 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.Result;
+import hudson.model.DependencyGraph.Dependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Starts the SCM polls of all downstream projects of an upstream build at once.
+ * <p>
+ * Jenkins evaluates the dependencies of a finished build one after another. Without
+ * this, every dependency which polls inline would wait for its poll before the next
+ * one starts and the upstream build would take the sum of all poll times to finish.
+ * Now the first dependency which needs a poll starts the polls of all of its siblings
+ * and each dependency only picks up its own result.
+ * <p>
+ * At most {@code hudson.plugins.downstream_ext.PollBatch.parallelism} polls of one
+ * upstream build run at the same time.
+ * <p>
+ * A dependency which decides without its poll - e.g. because the poll circuit of its project
+ * has been opened meanwhile - releases the poll. Polls which nobody has taken when the
+ * upstream build has completed are cancelled.
+ */
+final class PollBatch {
+
+	static final int PARALLELISM = Math.max(1,
+			SystemProperties.getInteger(PollBatch.class.getName() + ".parallelism", 4));
+
+	/**
+	 * Batches of the upstream builds whose dependencies are being evaluated.
+	 * Weak, so batches of builds whose dependencies have never been evaluated
+	 * completely - e.g. because Jenkins was interrupted - don't leak.
+	 */
+	private static final Map<AbstractBuild<?, ?>, PollBatch> BATCHES = new WeakHashMap<AbstractBuild<?, ?>, PollBatch>();
+
+	private final Map<AbstractProject<?, ?>, DownstreamDependency.TimedPoll> polls =
+		new HashMap<AbstractProject<?, ?>, DownstreamDependency.TimedPoll>();
+	private final Queue<DownstreamDependency.TimedPoll> waiting = new ArrayDeque<DownstreamDependency.TimedPoll>();
+	private final PollPriority priority;
+	private int running;
+
+	private PollBatch(PollPriority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Returns the poll of the dependency's downstream project for the build - started
+	 * together with the polls of the other dependencies of the build.
+	 * The caller must wait for the poll's result.
+	 *
+	 * @param result
+	 *      the result to check the build result condition against
+	 * @return null if there are no other dependencies to poll together with this one
+	 */
+	@SuppressWarnings("rawtypes")
+	static DownstreamDependency.TimedPoll take(AbstractBuild build, Result result, DownstreamDependency dependency) {
+		AbstractProject<?, ?> downstream = dependency.getDownstreamProject();
+		PollBatch batch;
+		synchronized (BATCHES) {
+			batch = BATCHES.get(build);
+			if (batch != null && !batch.polls.containsKey(downstream)) {
+				// evaluated twice or not known when the batch was started: poll on its own
+				return null;
+			}
+			if (batch == null) {
+				batch = create(build, result, dependency);
+				if (batch == null) {
+					return null;
+				}
+				BATCHES.put(build, batch);
+			}
+		}
+		batch.start();
+		synchronized (BATCHES) {
+			DownstreamDependency.TimedPoll poll = batch.polls.remove(downstream);
+			if (batch.polls.isEmpty()) {
+				BATCHES.remove(build);
+			}
+			return poll;
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static PollBatch create(AbstractBuild build, Result result, DownstreamDependency dependency) {
+		Jenkins jenkins = Jenkins.getInstanceOrNull();
+		if (jenkins == null) {
+			return null;
+		}
+		PollBatch batch = new PollBatch(dependency.getPollPriority());
+		for (Dependency d : jenkins.getDependencyGraph().getDownstreamDependencies(dependency.getUpstreamProject())) {
+			if (d instanceof DownstreamDependency && ((DownstreamDependency) d).needsInlinePoll(build, result)) {
+				AbstractProject<?, ?> p = d.getDownstreamProject();
+				if (p.hasPermission(Item.BUILD) && !batch.polls.containsKey(p)) {
+					DownstreamDependency.TimedPoll poll = new DownstreamDependency.TimedPoll(p);
+					batch.polls.put(p, poll);
+					batch.waiting.add(poll);
+				}
+			}
+		}
+		if (batch.polls.size() < 2 || !batch.polls.containsKey(dependency.getDownstreamProject())) {
+			// nothing to gain
+			return null;
+		}
+		return batch;
+	}
+
+	/**
+	 * Cancels the poll of the dependency's downstream project, if the batch of the build has started it
+	 * for the dependency, but the dependency has decided without waiting for it.
+	 */
+	@SuppressWarnings("rawtypes")
+	static void release(AbstractBuild build, DownstreamDependency dependency) {
+		DownstreamDependency.TimedPoll poll;
+		PollBatch batch;
+		synchronized (BATCHES) {
+			batch = BATCHES.get(build);
+			if (batch == null) {
+				return;
+			}
+			poll = batch.polls.remove(dependency.getDownstreamProject());
+			if (batch.polls.isEmpty()) {
+				BATCHES.remove(build);
+			}
+		}
+		if (poll != null) {
+			batch.cancel(Collections.singletonList(poll));
+		}
+	}
+
+	/**
+	 * Removes the batch of the build - if any - and cancels the polls nobody has taken.
+	 * Called when all dependencies of the build have been evaluated.
+	 */
+	@SuppressWarnings("rawtypes")
+	static void remove(AbstractBuild build) {
+		PollBatch batch;
+		List<DownstreamDependency.TimedPoll> untaken;
+		synchronized (BATCHES) {
+			batch = BATCHES.remove(build);
+			if (batch == null) {
+				return;
+			}
+			untaken = new ArrayList<DownstreamDependency.TimedPoll>(batch.polls.values());
+			batch.polls.clear();
+		}
+		batch.cancel(untaken);
+	}
+
+	private void cancel(List<DownstreamDependency.TimedPoll> polls) {
+		synchronized (this) {
+			this.waiting.removeAll(polls);
+		}
+		for (DownstreamDependency.TimedPoll poll : polls) {
+			// a running poll is done then, so the next waiting one starts
+			poll.cancel(true);
+		}
+	}
+
+	/**
+	 * Starts waiting polls as long as the parallelism allows.
+	 */
+	private void start() {
+		while (true) {
+			final DownstreamDependency.TimedPoll poll;
+			synchronized (this) {
+				if (this.running >= PARALLELISM || this.waiting.isEmpty()) {
+					return;
+				}
+				poll = this.waiting.poll();
+				this.running++;
+			}
+			poll.onDone(() -> {
+				synchronized (this) {
+					this.running--;
+				}
+				start();
+			});
+			DownstreamTrigger.executeForProject(poll.getProject(), poll, this.priority);
+		}
+	}
+}
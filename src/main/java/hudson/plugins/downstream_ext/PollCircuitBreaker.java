@@ -0,0 +1,146 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractProject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Stops polling downstream projects whose SCM keeps failing or is very slow.
+ * <p>
+ * After {@code hudson.plugins.downstream_ext.PollCircuitBreaker.threshold} failed or slow polls
+ * in a row, a project isn't polled for {@code hudson.plugins.downstream_ext.PollCircuitBreaker.coolDown}
+ * seconds. Trigger decisions fall back to {@link DownstreamTrigger#getPollTimeoutFallback()} meanwhile.
+ * After the cool-down a single poll is let through as a probe: if it's fine, polling goes back to normal,
+ * otherwise the project is blocked for another cool-down.
+ * A poll is slow if it takes longer than {@code hudson.plugins.downstream_ext.PollCircuitBreaker.slowPoll}
+ * milliseconds.
+ */
+final class PollCircuitBreaker {
+
+	private static final Logger LOGGER = Logger.getLogger(PollCircuitBreaker.class.getName());
+
+	static final int THRESHOLD = SystemProperties.getInteger(PollCircuitBreaker.class.getName() + ".threshold", 5);
+
+	static final long COOL_DOWN = SystemProperties.getLong(PollCircuitBreaker.class.getName() + ".coolDown", 300L);
+
+	static final long SLOW_POLL = SystemProperties.getLong(PollCircuitBreaker.class.getName() + ".slowPoll", 60000L);
+
+	private static final PollCircuitBreaker INSTANCE = new PollCircuitBreaker(THRESHOLD, COOL_DOWN, SLOW_POLL);
+
+	private final int threshold;
+	private final long coolDownNanos;
+	private final long slowPollMillis;
+
+	/**
+	 * Projects with at least one failed or slow poll in a row.
+	 */
+	private final ConcurrentHashMap<AbstractProject<?, ?>, State> states =
+		new ConcurrentHashMap<AbstractProject<?, ?>, State>();
+
+	PollCircuitBreaker(int threshold, long coolDownSeconds, long slowPollMillis) {
+		this.threshold = threshold;
+		this.coolDownNanos = TimeUnit.SECONDS.toNanos(coolDownSeconds);
+		this.slowPollMillis = slowPollMillis;
+	}
+
+	static PollCircuitBreaker get() {
+		return INSTANCE;
+	}
+
+	private boolean isEnabled() {
+		return this.threshold > 0;
+	}
+
+	/**
+	 * Whether the project may be polled now. If the cool-down is over, the caller's
+	 * poll is the probe and the project stays blocked for all others until it's recorded.
+	 */
+	boolean tryPoll(AbstractProject<?, ?> project) {
+		if (!isEnabled()) {
+			return true;
+		}
+		boolean[] allowed = new boolean[1];
+		this.states.computeIfPresent(project, (p, state) -> {
+			long now = System.nanoTime();
+			if (state.failures < this.threshold) {
+				allowed[0] = true;
+			} else if (now - state.openedAt >= this.coolDownNanos
+					&& (state.probeStartedAt == 0 || now - state.probeStartedAt >= this.coolDownNanos)) {
+				// a probe which hasn't been recorded within a cool-down has probably been dropped
+				state.probeStartedAt = now;
+				allowed[0] = true;
+			}
+			return state;
+		});
+		return allowed[0] || !this.states.containsKey(project);
+	}
+
+	/**
+	 * Whether polls of the project are blocked at the moment - without claiming the probe.
+	 */
+	boolean isOpen(AbstractProject<?, ?> project) {
+		State state = this.states.get(project);
+		long now = System.nanoTime();
+		return state != null && state.failures >= this.threshold
+			&& (now - state.openedAt < this.coolDownNanos
+				|| state.probeStartedAt != 0 && now - state.probeStartedAt < this.coolDownNanos);
+	}
+
+	/**
+	 * Seconds until the project may be polled again.
+	 */
+	long getRemainingCoolDown(AbstractProject<?, ?> project) {
+		State state = this.states.get(project);
+		if (state == null) {
+			return 0;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(this.coolDownNanos - (System.nanoTime() - state.openedAt)));
+	}
+
+	/**
+	 * Records a finished poll of the project.
+	 *
+	 * @param failed
+	 *      whether the poll failed. Polls which took too long count as failed, too
+	 */
+	void record(AbstractProject<?, ?> project, long millis, boolean failed) {
+		if (!isEnabled()) {
+			return;
+		}
+		if (!failed && millis <= this.slowPollMillis) {
+			if (this.states.remove(project) != null) {
+				LOGGER.fine("Polling " + project.getName() + " is back to normal");
+			}
+			return;
+		}
+		this.states.compute(project, (p, state) -> {
+			if (state == null) {
+				state = new State();
+			}
+			state.failures++;
+			if (state.failures >= this.threshold) {
+				if (state.probeStartedAt != 0 || state.failures == this.threshold) {
+					LOGGER.info("Not polling " + p.getName() + " for " + TimeUnit.NANOSECONDS.toSeconds(this.coolDownNanos)
+							+ " seconds after " + state.failures + " failed or slow polls in a row");
+				}
+				state.openedAt = System.nanoTime();
+				state.probeStartedAt = 0;
+			}
+			return state;
+		});
+	}
+
+	void remove(AbstractProject<?, ?> project) {
+		this.states.remove(project);
+	}
+
+	private static final class State {
+		private int failures;
+		private long openedAt;
+		private long probeStartedAt;
+	}
+}
@@ -0,0 +1,21 @@
+package hudson.plugins.downstream_ext;
+
+/**
+ * Defines what to do with the trigger decision if the SCM changes
+ * of the downstream project couldn't be determined in time.
+ */
+public enum PollFallback {
+	TRIGGER("Trigger the downstream project anyway"),
+	SKIP("Skip triggering the downstream project"),
+	ASYNC("Continue polling in the background and trigger later if applicable");
+
+	private final String description;
+
+	private PollFallback(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+}
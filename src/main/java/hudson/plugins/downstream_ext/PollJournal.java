@@ -0,0 +1,358 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.AbstractProject;
+import hudson.model.Cause;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Append-only journal of the asynchronous polls which haven't finished, yet,
+ * so that they survive a restart of Jenkins.
+ * <p>
+ * Written to {@code $JENKINS_HOME/downstream-ext/poll-journal}. Each line either adds a poll -
+ * id, full name of the downstream project, priority, quiet window and the upstream builds - or marks
+ * a poll as done.
+ * Actions of the upstream builds aren't kept. Lines are collected in memory and written and
+ * synced to disk every {@code hudson.plugins.downstream_ext.PollJournal.syncInterval} milliseconds,
+ * so a crash loses at most the polls of that interval. The journal is rewritten with only the
+ * pending polls when it has grown to more than {@code hudson.plugins.downstream_ext.PollJournal.compactAfter}
+ * lines and twice the number of pending polls.
+ * <p>
+ * The journal is read when Jenkins has loaded the jobs and the pending polls are started
+ * again when Jenkins has completed startup. Polls of projects whose workspace is on an agent
+ * which hasn't reconnected, yet, wait for it - see {@link DownstreamDependency.PollRunner}.
+ * Without a running Jenkins - e.g. in unit tests - nothing is journaled.
+ */
+public final class PollJournal {
+
+	private static final Logger LOGGER = Logger.getLogger(PollJournal.class.getName());
+
+	static final long SYNC_INTERVAL = SystemProperties.getLong(PollJournal.class.getName() + ".syncInterval", 1000L);
+
+	static final int COMPACT_AFTER = SystemProperties.getInteger(PollJournal.class.getName() + ".compactAfter", 1000);
+
+	/**
+	 * Returned instead of an id if nothing has been journaled.
+	 */
+	static final long NONE = -1;
+
+	private static final String ADDED = "A";
+	private static final String DONE = "D";
+	private static final char SEPARATOR = '\t';
+
+	// fields of a line which adds a poll - after the marker and the id
+	private static final int PROJECT = 2;
+	private static final int PRIORITY = 3;
+	private static final int DEBOUNCE_WINDOW = 4;
+	private static final int FIRST_CAUSE = 5;
+
+	private static final PollJournal INSTANCE = new PollJournal(null, COMPACT_AFTER);
+
+	/**
+	 * The journal file - or null for the one in {@code $JENKINS_HOME}.
+	 */
+	private final Path file;
+
+	private final int compactAfter;
+
+	private final AtomicLong nextId = new AtomicLong();
+
+	/**
+	 * Lines of the pending polls by id.
+	 */
+	private final Map<Long, String> pending = new LinkedHashMap<Long, String>();
+
+	/**
+	 * Lines which haven't been written to disk, yet.
+	 */
+	private final StringBuilder unwritten = new StringBuilder();
+
+	/**
+	 * Number of lines in the journal file - including the unwritten ones.
+	 */
+	private int lines;
+
+	/**
+	 * Polls read from the journal which haven't been started again, yet.
+	 */
+	private Map<Long, String[]> replayed = Collections.emptyMap();
+
+	private FileChannel channel;
+	private ScheduledFuture<?> scheduledSync;
+	private boolean enabled;
+
+	PollJournal(Path file, int compactAfter) {
+		this.file = file;
+		this.compactAfter = compactAfter;
+	}
+
+	static PollJournal get() {
+		return INSTANCE;
+	}
+
+	private Path getFile() {
+		if (this.file != null) {
+			return this.file;
+		}
+		return Jenkins.get().getRootDir().toPath().resolve("downstream-ext").resolve("poll-journal");
+	}
+
+	/**
+	 * Journals a new poll of the project for the given upstream builds.
+	 *
+	 * @return the id of the poll - or {@link #NONE} if the journal is disabled
+	 */
+	long add(AbstractProject<?, ?> project, PollPriority priority, int debounceWindow, List<Cause> causes) {
+		StringBuilder line = new StringBuilder(ADDED);
+		long id;
+		synchronized (this) {
+			if (!this.enabled) {
+				return NONE;
+			}
+			id = this.nextId.getAndIncrement();
+			line.append(SEPARATOR).append(id).append(SEPARATOR).append(project.getFullName())
+				.append(SEPARATOR).append(priority.name()).append(SEPARATOR).append(debounceWindow);
+			for (Cause cause : causes) {
+				if (cause instanceof Cause.UpstreamCause) {
+					Cause.UpstreamCause upstream = (Cause.UpstreamCause) cause;
+					line.append(SEPARATOR).append(upstream.getUpstreamProject())
+						.append('#').append(upstream.getUpstreamBuild());
+				}
+			}
+			line.append('\n');
+			this.pending.put(id, line.toString());
+			append(line);
+		}
+		return id;
+	}
+
+	/**
+	 * Marks the polls with the given ids as done.
+	 */
+	synchronized void done(List<Long> ids) {
+		if (!this.enabled) {
+			return;
+		}
+		for (Long id : ids) {
+			if (this.pending.remove(id) != null) {
+				append(new StringBuilder(DONE).append(SEPARATOR).append(id).append('\n'));
+			}
+		}
+	}
+
+	private void append(CharSequence line) {
+		this.unwritten.append(line);
+		this.lines++;
+		if (this.scheduledSync == null) {
+			this.scheduledSync = Timer.get().schedule(this::sync, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Writes the collected lines to disk - or rewrites the whole journal,
+	 * if it has grown too large.
+	 */
+	synchronized void sync() {
+		this.scheduledSync = null;
+		if (!this.enabled || this.unwritten.length() == 0) {
+			return;
+		}
+		try {
+			if (this.lines > this.compactAfter && this.lines > 2 * this.pending.size()) {
+				compact();
+			} else {
+				write(this.channel, this.unwritten);
+				this.channel.force(false);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to write the journal of pending downstream polls", e);
+		}
+		this.unwritten.setLength(0);
+	}
+
+	/**
+	 * Replaces the journal with one which only contains the pending polls.
+	 */
+	private void compact() throws IOException {
+		Path file = getFile();
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		StringBuilder content = new StringBuilder();
+		for (String line : this.pending.values()) {
+			content.append(line);
+		}
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(out, content);
+			out.force(false);
+		}
+		if (this.channel != null) {
+			this.channel.close();
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.channel = open(file);
+		this.lines = this.pending.size();
+	}
+
+	private static FileChannel open(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private static void write(FileChannel channel, CharSequence content) throws IOException {
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(content.toString());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Reads the polls which were pending when Jenkins stopped and starts the journal
+	 * with only them.
+	 */
+	@Initializer(after = InitMilestone.JOB_LOADED)
+	public static void load() {
+		get().doLoad();
+	}
+
+	synchronized void doLoad() {
+		Map<Long, String[]> polls = new LinkedHashMap<Long, String[]>();
+		Path file = getFile();
+		long maxId = NONE;
+		// from scratch - Jenkins may have been restarted within the same JVM
+		this.pending.clear();
+		this.unwritten.setLength(0);
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(String.valueOf(SEPARATOR));
+				try {
+					long id = Long.parseLong(fields[1]);
+					maxId = Math.max(maxId, id);
+					if (ADDED.equals(fields[0])) {
+						if (fields.length <= FIRST_CAUSE) {
+							throw new IllegalArgumentException("No upstream builds");
+						}
+						PollPriority.valueOf(fields[PRIORITY]);
+						Integer.parseInt(fields[DEBOUNCE_WINDOW]);
+						polls.put(id, fields);
+						this.pending.put(id, line + '\n');
+					} else if (DONE.equals(fields[0])) {
+						polls.remove(id);
+						this.pending.remove(id);
+					}
+				} catch (RuntimeException e) {
+					// e.g. the last line, if Jenkins crashed while writing it
+					LOGGER.fine("Skipping broken line of the poll journal: " + line);
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// nothing pending
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to read the journal of pending downstream polls", e);
+		}
+		this.replayed = polls;
+
+		this.nextId.set(maxId + 1);
+		try {
+			Files.createDirectories(file.getParent());
+			compact();
+			this.enabled = true;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to write the journal of pending downstream polls."
+					+ " Pending polls won't survive a restart", e);
+		}
+	}
+
+	/**
+	 * Queues the polls which were pending when Jenkins stopped again - not before startup
+	 * has completed, as their projects may be polled right away.
+	 */
+	@Initializer(after = InitMilestone.COMPLETED)
+	public static void replay() {
+		get().doReplay();
+	}
+
+	@SuppressWarnings("rawtypes")
+	void doReplay() {
+		Map<Long, String[]> polls;
+		synchronized (this) {
+			polls = this.replayed;
+			this.replayed = Collections.emptyMap();
+		}
+		if (!polls.isEmpty()) {
+			LOGGER.info("Restarting " + polls.size() + " downstream poll(s) which were pending on shutdown");
+		}
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			for (Map.Entry<Long, String[]> e : polls.entrySet()) {
+				List<Long> ids = Collections.singletonList(e.getKey());
+				String[] fields = e.getValue();
+				// checked when loaded
+				AbstractProject project = Jenkins.get().getItemByFullName(fields[PROJECT], AbstractProject.class);
+				PollPriority priority = PollPriority.valueOf(fields[PRIORITY]);
+				int debounceWindow = Integer.parseInt(fields[DEBOUNCE_WINDOW]);
+				List<Cause> causes = new ArrayList<Cause>();
+				for (int i = FIRST_CAUSE; i < fields.length; i++) {
+					try {
+						Run<?, ?> upstream = Run.fromExternalizableId(fields[i]);
+						if (upstream != null) {
+							causes.add(new Cause.UpstreamCause(upstream));
+						}
+					} catch (IllegalArgumentException ex) {
+						LOGGER.fine("Skipping unknown upstream build " + fields[i]);
+					}
+				}
+				if (project == null || causes.isEmpty()) {
+					LOGGER.info("Dropping pending poll of " + fields[PROJECT] + ": the project or its upstream builds are gone");
+					done(ids);
+					continue;
+				}
+				DownstreamTrigger.executeForProject(project,
+						new DownstreamDependency.PollRunner(project, causes, ids, priority, debounceWindow), priority);
+			}
+		}
+	}
+
+	/**
+	 * Don't lose the collected lines when Jenkins shuts down.
+	 */
+	@Terminator
+	public static void syncOnShutdown() throws IOException {
+		PollJournal journal = get();
+		synchronized (journal) {
+			journal.sync();
+			if (journal.channel != null) {
+				journal.channel.close();
+				journal.channel = null;
+			}
+			journal.enabled = false;
+		}
+	}
+}
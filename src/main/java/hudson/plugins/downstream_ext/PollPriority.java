@@ -0,0 +1,32 @@
+package hudson.plugins.downstream_ext;
+
+/**
+ * Priority of the asynchronous SCM polls of a trigger.
+ * <p>
+ * The weight is the share of the poll threads a poll gets compared to the other polls
+ * waiting in the same folder - a high priority poll is run 16 times as often as a low
+ * priority one. Folders themselves get shares according to their highest waiting priority.
+ *
+ * @see AsyncPollExecutor
+ */
+public enum PollPriority {
+	LOW("Low", 1),
+	NORMAL("Normal", 4),
+	HIGH("High", 16);
+
+	private final String description;
+	private final int weight;
+
+	private PollPriority(String description, int weight) {
+		this.description = description;
+		this.weight = weight;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	int getWeight() {
+		return weight;
+	}
+}
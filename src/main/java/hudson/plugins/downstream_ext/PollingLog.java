@@ -0,0 +1,99 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractProject;
+import hudson.model.TaskListener;
+import hudson.util.LogTaskListener;
+import hudson.util.StreamTaskListener;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * The log of the asynchronous SCM polls of a downstream project.
+ * <p>
+ * Written to {@value #FILE_NAME} in the directory of the project. When the file grows
+ * larger than {@code hudson.plugins.downstream_ext.PollingLog.maxSize} bytes (1 MB by default),
+ * it's moved to {@value #FILE_NAME}{@code .1} and a new file is started.
+ *
+ * @see PollingLogAction
+ */
+final class PollingLog {
+
+	private static final Logger LOGGER = Logger.getLogger(PollingLog.class.getName());
+
+	static final String FILE_NAME = "downstream-polling.log";
+
+	static final long MAX_SIZE = SystemProperties.getLong(PollingLog.class.getName() + ".maxSize", 1024L * 1024L);
+
+	private PollingLog() {
+	}
+
+	static File getFile(AbstractProject<?, ?> project) {
+		return new File(project.getRootDir(), FILE_NAME);
+	}
+
+	/**
+	 * Opens the polling log of the project for appending.
+	 * Falls back to the Jenkins log if the file can't be written.
+	 * The listener must be closed with {@link #close(TaskListener)}.
+	 */
+	static TaskListener open(AbstractProject<?, ?> project) {
+		return open(project, MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize
+	 *      bytes after which the log is rotated
+	 */
+	static TaskListener open(AbstractProject<?, ?> project, long maxSize) {
+		if (project.getRootDir() != null) {
+			Path log = getFile(project).toPath();
+			try {
+				if (Files.exists(log) && Files.size(log) > maxSize) {
+					Files.move(log, log.resolveSibling(FILE_NAME + ".1"), StandardCopyOption.REPLACE_EXISTING);
+				}
+				OutputStream out = new BufferedOutputStream(Files.newOutputStream(log,
+						StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+				return new StreamTaskListener(out, StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to open the polling log " + log, e);
+			}
+		}
+		return createLogListener();
+	}
+
+	static void close(TaskListener listener) {
+		if (listener instanceof Closeable) {
+			try {
+				((Closeable) listener).close();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to close the polling log", e);
+			}
+		}
+	}
+
+	private static TaskListener createLogListener() {
+		// workaround for HUDSON-5406:
+		// some (all?) SCMs require a serializable TaskListener for AbstractProject#pollSCMChanges
+		// LogTaskListener is not serializable (at least not up until Hudson 1.352)
+		TaskListener tl = new LogTaskListener(LOGGER, Level.INFO);
+		if (tl instanceof Serializable) {
+		    return tl;
+		} else {
+		    return StreamTaskListener.fromStdout();
+		}
+	}
+}
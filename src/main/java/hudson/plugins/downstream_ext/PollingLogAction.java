@@ -0,0 +1,62 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.TransientProjectActionFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Shows the {@link PollingLog} on the page of the downstream project.
+ * The link only shows up once there has been an asynchronous poll.
+ */
+public class PollingLogAction implements Action {
+
+	private final AbstractProject<?, ?> project;
+
+	PollingLogAction(AbstractProject<?, ?> project) {
+		this.project = project;
+	}
+
+	public AbstractProject<?, ?> getProject() {
+		return project;
+	}
+
+	public String getIconFileName() {
+		return PollingLog.getFile(project).exists() ? "clipboard.png" : null;
+	}
+
+	public String getDisplayName() {
+		return Messages.PollingLogAction_DisplayName();
+	}
+
+	public String getUrlName() {
+		return "downstreamPollingLog";
+	}
+
+	/**
+	 * The current polling log - without the rotated one.
+	 */
+	public String getLog() throws IOException {
+		File file = PollingLog.getFile(project);
+		if (!file.exists()) {
+			return "";
+		}
+		return Util.loadFile(file, StandardCharsets.UTF_8);
+	}
+
+	@Extension
+	public static class FactoryImpl extends TransientProjectActionFactory {
+		@Override
+		@SuppressWarnings("rawtypes")
+		public Collection<? extends Action> createFor(AbstractProject target) {
+			return Collections.singletonList(new PollingLogAction(target));
+		}
+	}
+}
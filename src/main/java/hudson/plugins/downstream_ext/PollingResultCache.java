@@ -0,0 +1,171 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SCMPollListener;
+import hudson.scm.PollingResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Remembers SCM polling results without changes for a while, so that a downstream
+ * project with many upstream projects isn't polled again and again for each
+ * finished upstream build.
+ * <p>
+ * Only results without changes of polls which haven't failed are cached. They are dropped when the time to live
+ * is over, when the downstream project starts a build or when the cache grows
+ * too large - least recently used first.
+ * <p>
+ * The cache is disabled unless a time to live (in seconds) is set with the system property
+ * {@code hudson.plugins.downstream_ext.PollingResultCache.ttl}. The maximum number of
+ * cached results can be set with {@code hudson.plugins.downstream_ext.PollingResultCache.maxSize}.
+ */
+final class PollingResultCache {
+
+	private static final PollingResultCache INSTANCE = new PollingResultCache(
+			SystemProperties.getLong(PollingResultCache.class.getName() + ".ttl", 0L),
+			SystemProperties.getInteger(PollingResultCache.class.getName() + ".maxSize", 1000));
+
+	/**
+	 * Set while the current thread polls - to whether the poll has failed. Jenkins reports
+	 * failed polls as results without changes and only tells {@link SCMPollListener}s.
+	 */
+	private static final ThreadLocal<boolean[]> POLL_FAILED = new ThreadLocal<boolean[]>();
+
+	private final long ttlNanos;
+
+	private final Map<AbstractProject<?, ?>, Entry> entries;
+
+	PollingResultCache(long ttlSeconds, final int maxSize) {
+		this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+		this.entries = new LinkedHashMap<AbstractProject<?, ?>, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<AbstractProject<?, ?>, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	static PollingResultCache get() {
+		return INSTANCE;
+	}
+
+	boolean isEnabled() {
+		return this.ttlNanos > 0;
+	}
+
+	/**
+	 * Polls the project - or returns a cached result without changes,
+	 * if the project has been polled recently.
+	 */
+	PollingResult poll(AbstractProject<?, ?> project, TaskListener listener) {
+		if (!isEnabled()) {
+			return timedPoll(project, listener, new boolean[1]);
+		}
+
+		long now = System.nanoTime();
+		synchronized (this.entries) {
+			Entry entry = this.entries.get(project);
+			if (entry != null) {
+				long age = now - entry.timestamp;
+				if (age < this.ttlNanos) {
+					listener.getLogger().println(Messages.DownstreamTrigger_CachedPollingResult(
+							project.getName(), TimeUnit.NANOSECONDS.toSeconds(age)));
+					TriggerMetrics.get().pollCacheHit();
+					// the project has been polled fine just recently
+					PollCircuitBreaker.get().record(project, 0, false);
+					return entry.result;
+				}
+				this.entries.remove(project);
+			}
+		}
+
+		boolean[] failed = new boolean[1];
+		PollingResult result = timedPoll(project, listener, failed);
+		// a failed poll reports no changes, too - but must not hide changes
+		if (!result.hasChanges() && !failed[0]) {
+			synchronized (this.entries) {
+				// time of the poll start, so that changes which came in while polling are
+				// never hidden longer than the time to live
+				this.entries.put(project, new Entry(result, now));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param failed
+	 *      set to whether the poll has failed
+	 */
+	private static PollingResult timedPoll(AbstractProject<?, ?> project, TaskListener listener, boolean[] failed) {
+		long start = System.nanoTime();
+		failed[0] = true;
+		boolean[] pollFailed = new boolean[1];
+		POLL_FAILED.set(pollFailed);
+		try {
+			PollingResult result = project.poll(listener);
+			failed[0] = pollFailed[0];
+			return result;
+		} finally {
+			POLL_FAILED.remove();
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			TriggerMetrics.get().polled(project, millis);
+			PollCircuitBreaker.get().record(project, millis, failed[0]);
+		}
+	}
+
+	void invalidate(AbstractProject<?, ?> project) {
+		if (!isEnabled()) {
+			return;
+		}
+		synchronized (this.entries) {
+			this.entries.remove(project);
+		}
+	}
+
+	private static final class Entry {
+		private final PollingResult result;
+		private final long timestamp;
+
+		Entry(PollingResult result, long timestamp) {
+			this.result = result;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * Notes failed polls of this plugin - e.g. because the SCM couldn't be reached.
+	 */
+	@Extension
+	public static class PollListenerImpl extends SCMPollListener {
+		@Override
+		public void onPollingFailed(Item project, TaskListener listener, Throwable exception) {
+			boolean[] failed = POLL_FAILED.get();
+			if (failed != null) {
+				failed[0] = true;
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached result when the downstream project starts a build.
+	 */
+	@Extension
+	@SuppressWarnings("rawtypes")
+	public static class RunListenerImpl extends RunListener<AbstractBuild> {
+		@Override
+		public void onStarted(AbstractBuild build, TaskListener listener) {
+			get().invalidate(build.getProject());
+		}
+	}
+}
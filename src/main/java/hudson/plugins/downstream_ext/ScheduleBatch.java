@@ -0,0 +1,121 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.init.Terminator;
+import hudson.model.AbstractProject;
+import hudson.model.Queue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Collects the downstream builds triggered within a short time and submits them
+ * to the Jenkins queue in one go.
+ * <p>
+ * Without this, a finished upstream build with many child projects - or many asynchronous
+ * polls finishing at about the same time - would take the queue lock once per downstream build.
+ * Requests for the same downstream project are merged into a single build.
+ * Disabled unless the time to collect (in milliseconds) is set with the system property
+ * {@code hudson.plugins.downstream_ext.ScheduleBatch.window}.
+ */
+public final class ScheduleBatch {
+
+	private static final Logger LOGGER = Logger.getLogger(ScheduleBatch.class.getName());
+
+	static final long WINDOW = SystemProperties.getLong(ScheduleBatch.class.getName() + ".window", 0L);
+
+	private static final ScheduleBatch INSTANCE = new ScheduleBatch(WINDOW);
+
+	private final long window;
+
+	private Map<AbstractProject<?, ?>, TriggerRequest> pending = new LinkedHashMap<AbstractProject<?, ?>, TriggerRequest>();
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	ScheduleBatch(long window) {
+		this.window = window;
+	}
+
+	static ScheduleBatch get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Whether builds are collected - only with a running Jenkins.
+	 */
+	static boolean isEnabled() {
+		return get().isCollecting();
+	}
+
+	private boolean isCollecting() {
+		return this.window > 0 && Jenkins.getInstanceOrNull() != null;
+	}
+
+	/**
+	 * Schedules a build of the project for the request - right away or with the next batch.
+	 *
+	 * @return whether a build has been scheduled - or null, if the request has been added
+	 *      to the next batch and it isn't known, yet
+	 */
+	Boolean schedule(AbstractProject<?, ?> project, TriggerRequest request) {
+		if (!isCollecting()) {
+			return request.schedule(project);
+		}
+		synchronized (this) {
+			TriggerRequest collected = this.pending.get(project);
+			if (collected != null) {
+				collected.merge(request);
+			} else {
+				this.pending.put(project, request);
+			}
+			if (this.scheduledFlush == null) {
+				this.scheduledFlush = Timer.get().schedule(this::flush, this.window, TimeUnit.MILLISECONDS);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Submits all collected builds to the queue while holding the queue lock once.
+	 */
+	void flush() {
+		final Map<AbstractProject<?, ?>, TriggerRequest> batch;
+		synchronized (this) {
+			batch = this.pending;
+			this.pending = new LinkedHashMap<AbstractProject<?, ?>, TriggerRequest>();
+			this.scheduledFlush = null;
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		Queue.withLock(() -> {
+			for (Map.Entry<AbstractProject<?, ?>, TriggerRequest> e : batch.entrySet()) {
+				if (!e.getValue().schedule(e.getKey())) {
+					LOGGER.fine("No build of " + e.getKey().getName() + " scheduled - this usually means that another build is already in the queue.");
+				}
+			}
+		});
+		LOGGER.fine("Submitted " + batch.size() + " downstream build(s) to the queue");
+	}
+
+	/**
+	 * Drops the collected request of a deleted project.
+	 */
+	synchronized void remove(AbstractProject<?, ?> project) {
+		this.pending.remove(project);
+	}
+
+	/**
+	 * Don't lose collected builds when Jenkins shuts down.
+	 */
+	@Terminator
+	public static void flushOnShutdown() {
+		get().flush();
+	}
+}
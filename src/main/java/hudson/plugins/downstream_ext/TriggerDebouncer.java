@@ -0,0 +1,89 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractProject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import jenkins.util.Timer;
+
+/**
+ * Holds back triggered builds of downstream projects for a quiet window.
+ * <p>
+ * All trigger requests for the same downstream project which come in until the
+ * window - started by the first request - closes are merged into one build.
+ *
+ * @see DownstreamTrigger#getDebounceWindow()
+ */
+final class TriggerDebouncer {
+
+	private static final Logger LOGGER = Logger.getLogger(TriggerDebouncer.class.getName());
+
+	private static final TriggerDebouncer INSTANCE = new TriggerDebouncer();
+
+	private final Map<AbstractProject<?, ?>, TriggerRequest> pending = new HashMap<AbstractProject<?, ?>, TriggerRequest>();
+
+	static TriggerDebouncer get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Schedules a build of the project for the request - after the quiet window, if there is one.
+	 * Every triggered build goes through here, whether it has been triggered right away
+	 * or after an asynchronous poll.
+	 *
+	 * @param windowSeconds
+	 *      quiet window of the trigger - 0 for none
+	 * @return like {@link ScheduleBatch#schedule} - null if the request has been held back
+	 */
+	Boolean submit(AbstractProject<?, ?> project, TriggerRequest request, int windowSeconds) {
+		if (windowSeconds > 0) {
+			hold(project, request, windowSeconds);
+			return null;
+		}
+		return ScheduleBatch.get().schedule(project, request);
+	}
+
+	/**
+	 * Holds the request back until the window for the project closes.
+	 *
+	 * @param windowSeconds
+	 *      length of the window, if this request opens a new one
+	 */
+	private void hold(final AbstractProject<?, ?> project, TriggerRequest request, int windowSeconds) {
+		synchronized (this) {
+			TriggerRequest held = this.pending.get(project);
+			if (held != null) {
+				held.merge(request);
+				return;
+			}
+			this.pending.put(project, request);
+		}
+		Timer.get().schedule(() -> release(project), windowSeconds, TimeUnit.SECONDS);
+	}
+
+	void release(AbstractProject<?, ?> project) {
+		TriggerRequest request;
+		synchronized (this) {
+			request = this.pending.remove(project);
+		}
+		if (request == null) {
+			return;
+		}
+		Boolean scheduled = ScheduleBatch.get().schedule(project, request);
+		if (scheduled == null || scheduled) {
+			LOGGER.fine("Build of " + project.getName() + " triggered for " + request.getCauses().size() + " upstream build(s).");
+		} else {
+			LOGGER.fine("No build of " + project.getName() + " scheduled - this usually means that another build is already in the queue.");
+		}
+	}
+
+	/**
+	 * Drops the held requests of a deleted project.
+	 */
+	synchronized void remove(AbstractProject<?, ?> project) {
+		this.pending.remove(project);
+	}
+}
@@ -0,0 +1,192 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Api;
+import hudson.model.RootAction;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Counters and timers of the trigger decisions and SCM polls done by this plugin.
+ * <p>
+ * Available for users with {@link Jenkins#SYSTEM_READ} permission
+ * at {@code $JENKINS_URL/downstream-ext-metrics/api/json?depth=1}.
+ */
+@ExportedBean
+public final class TriggerMetrics {
+
+	/**
+	 * The possible results of {@link DownstreamDependency#shouldTriggerBuild}.
+	 */
+	enum Outcome {
+		CONDITION_NOT_MET,
+		NO_LOCAL_CHANGES,
+		/**
+		 * The upstream build has no changes of the paths the downstream project is interested in.
+		 */
+		NO_RELEVANT_CHANGES,
+		NO_SCM_CHANGES,
+		ASYNC_DEFERRED,
+		POLL_TIMED_OUT,
+		POLL_FAILED,
+		CIRCUIT_OPEN,
+		/**
+		 * The build would have been held back, but the downstream project is disabled
+		 * or the upstream build may not build it.
+		 */
+		REFUSED,
+		DEBOUNCED,
+		ALREADY_TRIGGERED,
+		TRIGGERED
+	}
+
+	private static final TriggerMetrics INSTANCE = new TriggerMetrics();
+
+	private final Map<Outcome, LongAdder> evaluations = new EnumMap<Outcome, LongAdder>(Outcome.class);
+	private final LongAdder scheduled = new LongAdder();
+	private final LongAdder alreadyQueued = new LongAdder();
+	private final LongAdder pollCacheHits = new LongAdder();
+	private final LongAdder droppedPolls = new LongAdder();
+	private final LatencyHistogram pollLatency = new LatencyHistogram();
+	private final ConcurrentHashMap<AbstractProject<?, ?>, LatencyHistogram> pollLatencyByProject =
+		new ConcurrentHashMap<AbstractProject<?, ?>, LatencyHistogram>();
+
+	private TriggerMetrics() {
+		for (Outcome outcome : Outcome.values()) {
+			this.evaluations.put(outcome, new LongAdder());
+		}
+	}
+
+	static TriggerMetrics get() {
+		return INSTANCE;
+	}
+
+	void evaluated(Outcome outcome) {
+		this.evaluations.get(outcome).increment();
+	}
+
+	void scheduled(boolean success) {
+		if (success) {
+			this.scheduled.increment();
+		} else {
+			this.alreadyQueued.increment();
+		}
+	}
+
+	void pollCacheHit() {
+		this.pollCacheHits.increment();
+	}
+
+	void droppedPoll() {
+		this.droppedPolls.increment();
+	}
+
+	void polled(AbstractProject<?, ?> project, long millis) {
+		this.pollLatency.record(millis);
+		this.pollLatencyByProject.computeIfAbsent(project, p -> new LatencyHistogram()).record(millis);
+	}
+
+	void remove(AbstractProject<?, ?> project) {
+		this.pollLatencyByProject.remove(project);
+	}
+
+	/**
+	 * Number of trigger decisions by outcome.
+	 */
+	@Exported
+	public Map<String, Long> getEvaluations() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Map.Entry<Outcome, LongAdder> e : this.evaluations.entrySet()) {
+			result.put(e.getKey().name(), e.getValue().sum());
+		}
+		return result;
+	}
+
+	/**
+	 * Number of builds scheduled by this plugin - as opposed to by Jenkins
+	 * after a positive trigger decision.
+	 */
+	@Exported
+	public long getScheduled() {
+		return this.scheduled.sum();
+	}
+
+	/**
+	 * Number of builds this plugin tried to schedule, but which were already in the queue.
+	 */
+	@Exported
+	public long getAlreadyQueued() {
+		return this.alreadyQueued.sum();
+	}
+
+	@Exported
+	public long getPollCacheHits() {
+		return this.pollCacheHits.sum();
+	}
+
+	/**
+	 * Number of asynchronous polls dropped because too many were waiting for the same project.
+	 */
+	@Exported
+	public long getDroppedPolls() {
+		return this.droppedPolls.sum();
+	}
+
+	/**
+	 * Number of asynchronous polls waiting to run, per downstream project.
+	 */
+	@Exported
+	public Map<String, Integer> getPollQueueDepths() {
+		return new TreeMap<String, Integer>(AsyncPollExecutor.get().getPendingCounts());
+	}
+
+	@Exported
+	public LatencyHistogram getPollLatency() {
+		return this.pollLatency;
+	}
+
+	/**
+	 * Poll latencies by full name of the downstream project.
+	 */
+	@Exported
+	public Map<String, LatencyHistogram> getPollLatencyByProject() {
+		Map<String, LatencyHistogram> result = new TreeMap<String, LatencyHistogram>();
+		for (Map.Entry<AbstractProject<?, ?>, LatencyHistogram> e : this.pollLatencyByProject.entrySet()) {
+			result.put(e.getKey().getFullName(), e.getValue());
+		}
+		return result;
+	}
+
+	@Extension
+	public static class RootActionImpl implements RootAction {
+
+		public String getIconFileName() {
+			// not shown anywhere - only the API is of interest
+			return null;
+		}
+
+		public String getDisplayName() {
+			return "Downstream-Ext Metrics";
+		}
+
+		public String getUrlName() {
+			return "downstream-ext-metrics";
+		}
+
+		public Api getApi() {
+			Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+			return new Api(get());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The causes and actions of a downstream build which is about to be scheduled.
+ * <p>
+ * Several requests for the same downstream project can be merged, so that
+ * only one build is scheduled which carries all of the collected causes.
+ */
+final class TriggerRequest {
+
+	private final List<Cause> causes = new ArrayList<Cause>(1);
+	private final List<Action> actions = new ArrayList<Action>();
+
+	TriggerRequest(Cause cause, List<Action> actions) {
+		this.causes.add(cause);
+		this.actions.addAll(actions);
+	}
+
+	/**
+	 * Adds the causes and actions of the other request to this one.
+	 * Causes and actions which are already present aren't added twice.
+	 */
+	void merge(TriggerRequest other) {
+		for (Cause cause : other.causes) {
+			if (!this.causes.contains(cause)) {
+				this.causes.add(cause);
+			}
+		}
+		for (Action action : other.actions) {
+			if (!this.actions.contains(action)) {
+				this.actions.add(action);
+			}
+		}
+	}
+
+	List<Cause> getCauses() {
+		return Collections.unmodifiableList(this.causes);
+	}
+
+	/**
+	 * Schedules a single build of the project for this request.
+	 *
+	 * @return false if no build was scheduled - usually because another one is already queued
+	 */
+	boolean schedule(AbstractProject<?, ?> project) {
+		boolean scheduled;
+		if (this.causes.size() == 1) {
+			scheduled = project.scheduleBuild(project.getQuietPeriod(), this.causes.get(0),
+					this.actions.toArray(new Action[this.actions.size()]));
+		} else {
+			List<Action> all = new ArrayList<Action>(this.actions);
+			all.add(new CauseAction(this.causes));
+			scheduled = project.scheduleBuild(project.getQuietPeriod(), null,
+					all.toArray(new Action[all.size()]));
+		}
+		TriggerMetrics.get().scheduled(scheduled);
+		return scheduled;
+	}
+}
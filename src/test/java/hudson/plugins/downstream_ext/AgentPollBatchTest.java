@@ -0,0 +1,164 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.ItemGroup;
+import hudson.model.TaskListener;
+import hudson.scm.PollingResult;
+import hudson.scm.PollingResult.Change;
+import hudson.scm.SCM;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+@SuppressWarnings("rawtypes")
+public class AgentPollBatchTest {
+
+	private AsyncPollExecutor executor;
+	private CountDownLatch blockLatch;
+
+	/**
+	 * Polled projects in the order of their polls.
+	 */
+	private final List<String> polled = Collections.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void setup() {
+		this.executor = new AsyncPollExecutor(1);
+		// keeps the single pool thread busy until the test has queued its polls
+		this.blockLatch = new CountDownLatch(1);
+		this.executor.execute(createProject("blocker", "blocker"), () -> {
+			try {
+				this.blockLatch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		});
+	}
+
+	@After
+	public void release() {
+		this.blockLatch.countDown();
+	}
+
+	private AbstractProject createProject(String folderName, String name) {
+		AbstractProject project = mock(AbstractProject.class);
+		ItemGroup folder = mock(ItemGroup.class);
+		when(folder.getFullName()).thenReturn(folderName);
+		when(project.getParent()).thenReturn(folder);
+		when(project.getName()).thenReturn(name);
+		when(project.getFullName()).thenReturn(folderName + "/" + name);
+		SCM scm = mock(SCM.class);
+		when(scm.requiresWorkspaceForPolling()).thenReturn(Boolean.TRUE);
+		when(project.getScm()).thenReturn(scm);
+		when(project.poll(Mockito.<TaskListener>any())).thenAnswer(invocation -> {
+			this.polled.add(name);
+			return new PollingResult(Change.SIGNIFICANT);
+		});
+		return project;
+	}
+
+	private static DownstreamDependency.PollRunner createRunner(AbstractProject project) {
+		return new DownstreamDependency.PollRunner(project, mock(Cause.class), Collections.<Action>emptyList());
+	}
+
+	private void awaitPolls(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+		while (this.polled.size() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Time out waiting for polls: " + this.polled);
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Tests that polls of the same project waiting for a round are merged into one poll
+	 * which schedules a single build for all upstream builds.
+	 */
+	@Test
+	public void testPollsWithinARoundAreMerged() throws InterruptedException {
+		AgentPollBatch batch = new AgentPollBatch(this.executor, 10);
+		AbstractProject project1 = createProject("folder", "project1");
+		AbstractProject project2 = createProject("folder", "project2");
+		batch.execute(project1, createRunner(project1), PollPriority.NORMAL);
+		batch.execute(project1, createRunner(project1), PollPriority.NORMAL);
+		batch.execute(project2, createRunner(project2), PollPriority.NORMAL);
+		this.blockLatch.countDown();
+
+		awaitPolls(2);
+		assertEquals(Arrays.asList("project1", "project2"), this.polled);
+		verify(project1, timeout(60000)).scheduleBuild(eq(0), (Cause) isNull(), any(CauseAction.class));
+	}
+
+	/**
+	 * Tests that the round of a folder is queued for a project of that folder,
+	 * so it takes its turn with the other polls of the folder.
+	 */
+	@Test
+	public void testRoundsArePerFolder() {
+		AgentPollBatch batch = new AgentPollBatch(this.executor, 10);
+		AbstractProject busy = createProject("busy", "busy");
+		AbstractProject quiet = createProject("quiet", "quiet");
+		batch.execute(busy, createRunner(busy), PollPriority.NORMAL);
+		batch.execute(quiet, createRunner(quiet), PollPriority.NORMAL);
+
+		assertEquals(Integer.valueOf(1), this.executor.getPendingCounts().get("busy/busy"));
+		assertEquals(Integer.valueOf(1), this.executor.getPendingCounts().get("quiet/quiet"));
+	}
+
+	/**
+	 * Tests that a round polls at most the configured number of projects and
+	 * other folders get a turn before the next round.
+	 */
+	@Test
+	public void testRoundSizeIsBounded() throws InterruptedException {
+		AgentPollBatch batch = new AgentPollBatch(this.executor, 2);
+		for (String name : Arrays.asList("project1", "project2", "project3")) {
+			AbstractProject project = createProject("busy", name);
+			batch.execute(project, createRunner(project), PollPriority.NORMAL);
+		}
+		this.executor.execute(createProject("quiet", "quiet"), () -> this.polled.add("quiet"));
+		this.blockLatch.countDown();
+
+		awaitPolls(4);
+		assertEquals(Arrays.asList("project1", "project2", "quiet", "project3"), this.polled);
+	}
+
+	/**
+	 * Tests that a round whose project is deleted while the round waits moves on
+	 * to another project and the deleted project isn't polled.
+	 */
+	@Test
+	public void testDeletedProjectDropsItsPoll() throws InterruptedException {
+		AgentPollBatch batch = new AgentPollBatch(this.executor, 10);
+		AbstractProject deleted = createProject("folder", "deleted");
+		AbstractProject project = createProject("folder", "project");
+		batch.execute(deleted, createRunner(deleted), PollPriority.NORMAL);
+		batch.execute(project, createRunner(project), PollPriority.NORMAL);
+
+		// like ItemListenerImpl.onDeleted
+		batch.remove(deleted);
+		this.executor.remove(deleted);
+		assertEquals(Integer.valueOf(1), this.executor.getPendingCounts().get("folder/project"));
+		this.blockLatch.countDown();
+
+		awaitPolls(1);
+		verify(project, timeout(60000)).scheduleBuild(eq(0), any(Cause.class));
+		assertEquals(Collections.singletonList("project"), this.polled);
+		verify(deleted, never()).poll(Mockito.<TaskListener>any());
+	}
+}
@@ -8,6 +8,8 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Result;
 import hudson.model.TaskListener;
@@ -17,10 +19,12 @@ import hudson.scm.PollingResult.Change;
 import hudson.scm.SCM;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -195,4 +199,238 @@ public class AsynchPollingTest {
 		noTimeout = startLatch2.await(60, TimeUnit.SECONDS);
 		assertTrue(noTimeout);
 	}
+	
+	/**
+	 * Tests that pending polls for the same project are merged into one poll
+	 * which schedules a single build carrying all causes.
+	 */
+	@Test
+	public void testPendingPollsAreMerged() throws InterruptedException {
+		AbstractProject project = createDownstreamProject();
+		DownstreamDependency dependency = new DownstreamDependency(upstream, project,
+				new DownstreamTrigger("", Result.SUCCESS, true, false, Strategy.AND_HIGHER,
+						MatrixTrigger.BOTH));
+		
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		DownstreamTrigger.executeForProject(project, () -> {
+			try {
+				blockLatch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		});
+		
+		Action action1 = mock(Action.class);
+		Action action2 = mock(Action.class);
+		DownstreamTrigger.executeForProject(project, dependency.getPoller(project,
+				mock(Cause.class), Collections.singletonList(action1)));
+		DownstreamTrigger.executeForProject(project, dependency.getPoller(project,
+				mock(Cause.class), Collections.singletonList(action2)));
+		
+		final CountDownLatch endLatch = new CountDownLatch(1);
+		DownstreamTrigger.executeForProject(project, endLatch::countDown);
+		blockLatch.countDown();
+		
+		if(!endLatch.await(60, TimeUnit.SECONDS)) {
+			fail("Time out waiting for end latch");
+		}
+		
+		verify(project, times(1)).poll(Mockito.<TaskListener>any());
+		verify(project, times(1)).scheduleBuild(eq(0), (Cause) isNull(),
+				eq(action1), eq(action2), any(CauseAction.class));
+	}
+	
+	/**
+	 * Tests that builds triggered by asynchronous polls are held back
+	 * for the quiet window of the trigger, too.
+	 */
+	@Test
+	public void testAsynchronousTriggersAreDebounced() throws InterruptedException {
+		AbstractProject project = createDownstreamProject();
+		new DownstreamDependency.PollRunner(project, mock(Cause.class), Collections.<Action>emptyList(),
+				PollPriority.NORMAL, 1).run();
+		new DownstreamDependency.PollRunner(project, mock(Cause.class), Collections.<Action>emptyList(),
+				PollPriority.NORMAL, 1).run();
+		verify(project, never()).scheduleBuild(anyInt(), any(Cause.class));
+		
+		// a single build for both upstream builds when the window closes
+		verify(project, timeout(60000)).scheduleBuild(eq(0), (Cause) isNull(), any(CauseAction.class));
+		verify(project, times(2)).poll(Mockito.<TaskListener>any());
+	}
+
+	/**
+	 * Tests that triggers aren't held back for the quiet window if the downstream
+	 * project may not be built or is disabled.
+	 */
+	@Test
+	public void testDebouncedTriggersAreCheckedUpFront() {
+		AbstractProject project = createDownstreamProject();
+		DownstreamTrigger trigger = new DownstreamTrigger("", Result.SUCCESS, false, false, Strategy.AND_HIGHER,
+				MatrixTrigger.BOTH);
+		trigger.setDebounceWindow(1);
+		DownstreamDependency dependency = new DownstreamDependency(upstream, project, trigger);
+
+		assertFalse(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+		when(project.hasPermission(Item.BUILD)).thenReturn(true);
+		when(project.isDisabled()).thenReturn(true);
+		assertFalse(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+		when(project.isDisabled()).thenReturn(false);
+		assertFalse(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+
+		// only the last trigger has been held - it's not merged with the refused ones
+		verify(project, timeout(60000)).scheduleBuild(eq(0), (Cause) notNull());
+		verify(project, never()).scheduleBuild(anyInt(), (Cause) isNull(), any(CauseAction.class));
+	}
+
+	/**
+	 * Tests that a poll which doesn't finish in time for a SCM which doesn't
+	 * need a workspace falls back to the configured policy.
+	 */
+	@Test
+	public void testPollTimeoutFallback() throws InterruptedException {
+		final CountDownLatch pollLatch = new CountDownLatch(1);
+		AbstractProject project = mock(AbstractProject.class);
+		SCM scm = mock(SCM.class);
+		when(scm.requiresWorkspaceForPolling()).thenReturn(Boolean.FALSE);
+		when(project.getScm()).thenReturn(scm);
+		when(project.poll(Mockito.<TaskListener>any())).thenAnswer(invocation -> {
+			pollLatch.await();
+			return new PollingResult(Change.SIGNIFICANT);
+		});
+		
+		DownstreamTrigger trigger = new DownstreamTrigger("", Result.SUCCESS, true, false, Strategy.AND_HIGHER,
+				MatrixTrigger.BOTH);
+		trigger.setPollTimeout(1);
+		DownstreamDependency dependency = new DownstreamDependency(upstream, project, trigger);
+		
+		trigger.setPollTimeoutFallback(PollFallback.TRIGGER);
+		assertTrue(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+		
+		trigger.setPollTimeoutFallback(PollFallback.SKIP);
+		assertFalse(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+		
+		// the deferred poll can only schedule a build the upstream build may trigger
+		trigger.setPollTimeoutFallback(PollFallback.ASYNC);
+		assertFalse(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+		when(project.hasPermission(Item.BUILD)).thenReturn(true);
+		assertFalse(dependency.shouldTriggerBuild(upstreamBuild,
+				TaskListener.NULL, Collections.<Action>emptyList()));
+		verify(project, never()).scheduleBuild(anyInt(), any(Cause.class));
+		
+		// build is scheduled as soon as the deferred poll finishes
+		pollLatch.countDown();
+		verify(project, timeout(60000)).scheduleBuild(anyInt(), any(Cause.class));
+	}
+	
+	/**
+	 * Tests that polls waiting for a deleted project are cancelled
+	 * instead of leaving their upstream build waiting forever.
+	 */
+	@Test
+	public void testRemovedProjectCancelsWaitingPolls() {
+		AsyncPollExecutor executor = new AsyncPollExecutor(1);
+		AbstractProject project = createProjectInFolder("folder");
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		executor.execute(project, () -> {
+			try {
+				blockLatch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		});
+		DownstreamDependency.TimedPoll poll = new DownstreamDependency.TimedPoll(project);
+		executor.execute(project, poll);
+		
+		executor.remove(project);
+		blockLatch.countDown();
+		assertTrue(poll.isCancelled());
+	}
+	
+	/**
+	 * Tests that a burst of polls in one folder doesn't make the polls
+	 * of another folder wait until the whole burst is done.
+	 */
+	@Test
+	public void testFoldersShareThePoolFairly() throws InterruptedException {
+		AsyncPollExecutor executor = new AsyncPollExecutor(1);
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		executor.execute(createProjectInFolder("blocker"), () -> {
+			try {
+				blockLatch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		});
+		
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		int burst = 10;
+		final CountDownLatch endLatch = new CountDownLatch(burst + 1);
+		for (int i = 0; i < burst; i++) {
+			executor.execute(createProjectInFolder("busy"), () -> {
+				order.add("busy");
+				endLatch.countDown();
+			});
+		}
+		executor.execute(createProjectInFolder("quiet"), () -> {
+			order.add("quiet");
+			endLatch.countDown();
+		}, PollPriority.LOW);
+		blockLatch.countDown();
+		
+		if(!endLatch.await(60, TimeUnit.SECONDS)) {
+			fail("Time out waiting for end latch");
+		}
+		assertTrue("quiet folder had to wait: " + order, order.indexOf("quiet") <= 1);
+	}
+	
+	/**
+	 * Tests that tasks of the same project are run one after another
+	 * on virtual threads, too - or on the pool, if the runtime has no virtual threads.
+	 */
+	@Test
+	public void testVirtualThreadsKeepTasksOfAProjectInOrder() throws InterruptedException {
+		AsyncPollExecutor executor = new AsyncPollExecutor(AsyncPollExecutor.createVirtualThreadExecutor(2),
+				100, AsyncPollExecutor.OverflowPolicy.COALESCE);
+		AbstractProject project = createProjectInFolder("folder");
+		
+		final AtomicInteger running = new AtomicInteger();
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		// failures inside the tasks don't reach the test - collect them
+		final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		int count = 50;
+		final CountDownLatch endLatch = new CountDownLatch(count);
+		for (int i = 0; i < count; i++) {
+			final int n = i;
+			executor.execute(project, () -> {
+				if (running.incrementAndGet() > 1) {
+					failures.add("task " + n + " ran in parallel with another task of the same project");
+				}
+				order.add(n);
+				running.decrementAndGet();
+				endLatch.countDown();
+			});
+		}
+		
+		if(!endLatch.await(60, TimeUnit.SECONDS)) {
+			fail("Time out waiting for end latch");
+		}
+		assertEquals(Collections.emptyList(), failures);
+		for (int i = 0; i < count; i++) {
+			assertEquals(Integer.valueOf(i), order.get(i));
+		}
+	}
+	
+	private static AbstractProject createProjectInFolder(String folderName) {
+		AbstractProject project = mock(AbstractProject.class);
+		ItemGroup folder = mock(ItemGroup.class);
+		when(folder.getFullName()).thenReturn(folderName);
+		when(project.getParent()).thenReturn(folder);
+		return project;
+	}
 }
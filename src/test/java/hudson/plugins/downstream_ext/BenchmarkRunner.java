@@ -0,0 +1,40 @@
+package hudson.plugins.downstream_ext;
+
+import java.util.concurrent.TimeUnit;
+
+import jenkins.benchmark.jmh.BenchmarkFinder;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all JMH benchmarks of this plugin. Not part of the regular test run -
+ * use {@code mvn -Pjmh test}. Results are written to {@code target/jmh-report.json}.
+ */
+public class BenchmarkRunner {
+
+	@Test
+	public void runJmhBenchmarks() throws Exception {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.mode(Mode.AverageTime)
+				.timeUnit(TimeUnit.MILLISECONDS)
+				.warmupIterations(3)
+				.measurementIterations(5)
+				.threads(1)
+				.forks(1)
+				.shouldFailOnError(true)
+				.shouldDoGC(true)
+				// allocation rate per operation
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-report.json");
+
+		new BenchmarkFinder(getClass()).findBenchmarks(options);
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,98 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+
+@SuppressWarnings("rawtypes")
+public class ChildProjectsIndexTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private static DownstreamTrigger createTrigger(String childProjects, ChildPathFilter... filters) {
+		DownstreamTrigger trigger = new DownstreamTrigger(childProjects, Result.SUCCESS, false, false,
+				Strategy.AND_HIGHER, null);
+		trigger.setChildPathFilters(Arrays.asList(filters));
+		return trigger;
+	}
+
+	/**
+	 * Tests that child projects are indexed by their full name and - for paths - also by the path
+	 * as full name.
+	 */
+	@Test
+	public void testChildProjectsAreIndexed() throws Exception {
+		MockFolder folder = this.j.createFolder("folder");
+		FreeStyleProject upstream = folder.createProject(FreeStyleProject.class, "upstream");
+		ChildProjectsIndex.get().update(upstream, createTrigger("child, sub/child, ../other"));
+
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("folder/child"));
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("folder/sub/child"));
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("sub/child"));
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("other"));
+		assertTrue(ChildProjectsIndex.get().getUpstreamProjects("child").isEmpty());
+	}
+
+	/**
+	 * Tests that projects which only appear in a path filter are indexed, too, so that
+	 * the filter is updated when they are renamed.
+	 */
+	@Test
+	public void testPathFilterProjectsAreIndexed() throws Exception {
+		MockFolder folder = this.j.createFolder("folder");
+		FreeStyleProject upstream = folder.createProject(FreeStyleProject.class, "upstream");
+		ChildProjectsIndex.get().update(upstream, createTrigger("child",
+				new ChildPathFilter("filtered", "src/**", null),
+				new ChildPathFilter("sub/filtered", "src/**", null)));
+
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("folder/filtered"));
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("folder/sub/filtered"));
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("sub/filtered"));
+	}
+
+	/**
+	 * Tests that updating an upstream project drops the child projects it no longer refers to.
+	 */
+	@Test
+	public void testUpdateReplacesChildProjects() throws Exception {
+		FreeStyleProject upstream = this.j.createFreeStyleProject("upstream");
+		ChildProjectsIndex.get().update(upstream, createTrigger("child", new ChildPathFilter("filtered", null, "*.md")));
+		ChildProjectsIndex.get().update(upstream, createTrigger("other"));
+
+		assertTrue(ChildProjectsIndex.get().getUpstreamProjects("child").isEmpty());
+		assertTrue(ChildProjectsIndex.get().getUpstreamProjects("filtered").isEmpty());
+		assertEquals(Collections.singletonList(upstream), ChildProjectsIndex.get().getUpstreamProjects("other"));
+
+		ChildProjectsIndex.get().update(upstream, null);
+		assertTrue(ChildProjectsIndex.get().getUpstreamProjects("other").isEmpty());
+	}
+
+	/**
+	 * Tests that renaming a project which is only named in a path filter renames it in the filter.
+	 */
+	@Test
+	public void testRenamedPathFilterProject() throws Exception {
+		FreeStyleProject upstream = this.j.createFreeStyleProject("upstream");
+		FreeStyleProject filtered = this.j.createFreeStyleProject("filtered");
+		DownstreamTrigger trigger = createTrigger("child", new ChildPathFilter("filtered", "src/**", null));
+		upstream.getPublishersList().add(trigger);
+		this.j.jenkins.rebuildDependencyGraph();
+
+		filtered.renameTo("renamed");
+		LocationChangeBatch.get().flush();
+
+		trigger = (DownstreamTrigger) upstream.getPublishersList().get(DownstreamTrigger.class);
+		assertEquals("child", trigger.getChildProjectsValue());
+		assertEquals("renamed", trigger.getChildPathFilters().get(0).getChildProject());
+	}
+}
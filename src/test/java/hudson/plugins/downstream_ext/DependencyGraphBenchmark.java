@@ -0,0 +1,122 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+import hudson.model.DependencyGraph;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures how long it takes - and how much is allocated - to build the dependency
+ * graph with {@link DownstreamTrigger}s on a synthetic set of jobs.
+ * To measure larger job sets, change the {@link Param} values.
+ */
+@JmhBenchmark
+public class DependencyGraphBenchmark {
+
+	public static class JenkinsState extends JmhBenchmarkState {
+
+		/**
+		 * Total number of plain jobs. Every 10th of them triggers the following 3 jobs.
+		 */
+		@Param("2000")
+		public int jobCount;
+
+		/**
+		 * Number of child projects of the wide upstream job and of the matrix job.
+		 */
+		@Param("100")
+		public int childCount;
+
+		/**
+		 * Number of values of the single matrix axis - i.e. number of configurations.
+		 */
+		@Param("50")
+		public int axisSize;
+
+		FreeStyleProject wideUpstream;
+		MatrixProject matrixUpstream;
+
+		@Override
+		public void setup() throws Exception {
+			Jenkins jenkins = getJenkins();
+
+			for (int i = 0; i < jobCount; i++) {
+				FreeStyleProject p = jenkins.createProject(FreeStyleProject.class, jobName(i));
+				if (i % 10 == 0) {
+					p.getPublishersList().add(newTrigger(jobName(i + 1) + "," + jobName(i + 2) + "," + jobName(i + 3),
+							MatrixTrigger.ONLY_PARENT));
+				}
+			}
+
+			StringBuilder children = new StringBuilder();
+			for (int i = 0; i < childCount; i++) {
+				if (children.length() > 0) {
+					children.append(',');
+				}
+				children.append(jobName(i));
+			}
+
+			wideUpstream = jenkins.createProject(FreeStyleProject.class, "wide-upstream");
+			wideUpstream.getPublishersList().add(newTrigger(children.toString(), MatrixTrigger.ONLY_PARENT));
+
+			String[] values = new String[axisSize];
+			for (int i = 0; i < axisSize; i++) {
+				values[i] = "v" + i;
+			}
+			matrixUpstream = jenkins.createProject(MatrixProject.class, "matrix-upstream");
+			matrixUpstream.setAxes(new AxisList(new TextAxis("axis", values)));
+			matrixUpstream.getPublishersList().add(newTrigger(children.toString(), MatrixTrigger.BOTH));
+		}
+
+		private static String jobName(int i) {
+			return "job-" + i;
+		}
+
+		private static DownstreamTrigger newTrigger(String childProjects, MatrixTrigger matrixTrigger) {
+			return new DownstreamTrigger(childProjects, Result.SUCCESS, false, false,
+					Strategy.AND_HIGHER, matrixTrigger);
+		}
+	}
+
+	/**
+	 * Complete graph rebuild, as done by Jenkins on every job configuration change.
+	 */
+	@Benchmark
+	public DependencyGraph fullGraph(JenkinsState state) {
+		DependencyGraph graph = new DependencyGraph();
+		graph.build();
+		return graph;
+	}
+
+	/**
+	 * Dependencies declared by a single trigger with many child projects.
+	 */
+	@Benchmark
+	public DependencyGraph wideTrigger(JenkinsState state) {
+		DependencyGraph graph = new DependencyGraph();
+		state.wideUpstream.getPublishersList().get(DownstreamTrigger.class)
+			.buildDependencyGraph(state.wideUpstream, graph);
+		return graph;
+	}
+
+	/**
+	 * Dependencies declared by a trigger of a matrix project for the parent and all configurations.
+	 */
+	@Benchmark
+	public DependencyGraph matrixTrigger(JenkinsState state) {
+		DependencyGraph graph = new DependencyGraph();
+		state.matrixUpstream.getPublishersList().get(DownstreamTrigger.class)
+			.buildDependencyGraph(state.matrixUpstream, graph);
+		return graph;
+	}
+}
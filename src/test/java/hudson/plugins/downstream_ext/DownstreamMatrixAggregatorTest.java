@@ -0,0 +1,128 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.Launcher;
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Cause;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class DownstreamMatrixAggregatorTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private FreeStyleProject downstream;
+
+	@Before
+	public void setup() throws Exception {
+		// two configurations and the downstream build at the same time
+		this.j.jenkins.setNumExecutors(3);
+		this.downstream = this.j.createFreeStyleProject("downstream");
+		ConfigurationBuilder.release = new CountDownLatch(1);
+	}
+
+	private MatrixProject createMatrixProject(Strategy strategy, Result threshold, String... configurations)
+			throws Exception {
+		MatrixProject matrix = this.j.createProject(MatrixProject.class, "matrix");
+		matrix.setAxes(new AxisList(new TextAxis("config", configurations)));
+		matrix.getBuildersList().add(new ConfigurationBuilder());
+		matrix.getPublishersList().add(new DownstreamTrigger("downstream", threshold, false, false, strategy,
+				MatrixTrigger.ONLY_PARENT_WHEN_DECIDED));
+		this.j.jenkins.rebuildDependencyGraph();
+		return matrix;
+	}
+
+	/**
+	 * Fails the configuration {@code fail}, waits for the test in the configuration {@code slow}
+	 * and passes the other configurations.
+	 */
+	public static class ConfigurationBuilder extends TestBuilder {
+
+		static volatile CountDownLatch release;
+
+		@Override
+		public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+				throws InterruptedException {
+			String config = build.getBuildVariables().get("config");
+			if ("slow".equals(config)) {
+				return release.await(60, TimeUnit.SECONDS);
+			}
+			return !"fail".equals(config);
+		}
+	}
+
+	/**
+	 * Tests that the downstream project is triggered as soon as a failed configuration decides
+	 * the condition - while another configuration is still running - and isn't triggered again
+	 * when the matrix build has finished.
+	 */
+	@Test
+	public void testTriggeredWhenDecided() throws Exception {
+		MatrixProject matrix = createMatrixProject(Strategy.AND_LOWER, Result.FAILURE, "fail", "slow");
+
+		Future<MatrixBuild> future = matrix.scheduleBuild2(0);
+		try {
+			long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+			while (this.downstream.getLastBuild() == null) {
+				assertTrue("Time out waiting for the downstream build", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			assertTrue(matrix.getLastBuild().isBuilding());
+		} finally {
+			ConfigurationBuilder.release.countDown();
+		}
+
+		MatrixBuild build = this.j.assertBuildStatus(Result.FAILURE, future);
+		this.j.waitUntilNoActivity();
+		assertEquals(1, this.downstream.getBuilds().size());
+		assertNotNull(build.getAction(EarlyTriggerAction.class));
+		assertEquals("matrix", this.downstream.getLastBuild().getCause(Cause.UpstreamCause.class).getUpstreamProject());
+	}
+
+	/**
+	 * Tests that the downstream project isn't triggered at all once a failed configuration
+	 * decides that the condition isn't met.
+	 */
+	@Test
+	public void testNotTriggeredWhenDecided() throws Exception {
+		MatrixProject matrix = createMatrixProject(Strategy.AND_HIGHER, Result.SUCCESS, "fail", "slow");
+		ConfigurationBuilder.release.countDown();
+
+		MatrixBuild build = this.j.assertBuildStatus(Result.FAILURE, matrix.scheduleBuild2(0));
+		this.j.waitUntilNoActivity();
+		assertNull(this.downstream.getLastBuild());
+		assertNull(build.getAction(EarlyTriggerAction.class));
+	}
+
+	/**
+	 * Tests that a condition which can't be decided early is evaluated - once - when
+	 * the matrix build has finished.
+	 */
+	@Test
+	public void testTriggeredWhenFinished() throws Exception {
+		MatrixProject matrix = createMatrixProject(Strategy.AND_HIGHER, Result.SUCCESS, "pass", "slow");
+		ConfigurationBuilder.release.countDown();
+
+		MatrixBuild build = this.j.assertBuildStatusSuccess(matrix.scheduleBuild2(0));
+		this.j.waitUntilNoActivity();
+		assertEquals(1, this.downstream.getBuilds().size());
+		assertNull(build.getAction(EarlyTriggerAction.class));
+	}
+}
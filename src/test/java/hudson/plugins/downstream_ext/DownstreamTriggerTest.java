@@ -0,0 +1,111 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.Result;
+import hudson.model.User;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.WithoutJenkins;
+
+@SuppressWarnings("rawtypes")
+public class DownstreamTriggerTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private static DownstreamTrigger createTrigger(String childProjects) {
+		return new DownstreamTrigger(childProjects, Result.SUCCESS, false, false, Strategy.AND_HIGHER, null);
+	}
+
+	private List<AbstractProject> getChildProjectsAsSystem(DownstreamTrigger trigger) {
+		try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+			return trigger.getChildProjects(this.j.jenkins);
+		}
+	}
+
+	@Test
+	@WithoutJenkins
+	public void testChildProjectsWithoutJenkins() {
+		List<AbstractProject> projects = createTrigger("child").getChildProjects(null);
+		assertTrue(projects.isEmpty());
+		// not the unmodifiable empty list
+		projects.add(null);
+	}
+
+	/**
+	 * Tests that the child projects resolved as system are remembered and that callers
+	 * get a copy they may change.
+	 */
+	@Test
+	public void testChildProjectsAreRemembered() throws Exception {
+		FreeStyleProject child1 = this.j.createFreeStyleProject("child1");
+		FreeStyleProject child2 = this.j.createFreeStyleProject("child2");
+		DownstreamTrigger trigger = createTrigger("child1, child2, missing");
+
+		List<AbstractProject> projects = getChildProjectsAsSystem(trigger);
+		assertEquals(Arrays.asList(child1, child2), projects);
+		projects.clear();
+
+		List<AbstractProject> remembered = getChildProjectsAsSystem(trigger);
+		assertEquals(Arrays.asList(child1, child2), remembered);
+		assertNotSame(projects, remembered);
+	}
+
+	/**
+	 * Tests that remembered child projects are resolved again when items are created,
+	 * renamed or deleted.
+	 */
+	@Test
+	public void testRememberedChildProjectsAreInvalidated() throws Exception {
+		FreeStyleProject child = this.j.createFreeStyleProject("child");
+		DownstreamTrigger trigger = createTrigger("child, missing");
+		assertEquals(Collections.singletonList(child), getChildProjectsAsSystem(trigger));
+
+		FreeStyleProject missing = this.j.createFreeStyleProject("missing");
+		assertEquals(Arrays.asList(child, missing), getChildProjectsAsSystem(trigger));
+
+		child.renameTo("renamed");
+		assertEquals(Collections.singletonList(missing), getChildProjectsAsSystem(trigger));
+
+		missing.delete();
+		assertTrue(getChildProjectsAsSystem(trigger).isEmpty());
+	}
+
+	/**
+	 * Tests that child projects resolved as a user are neither remembered nor taken from
+	 * the ones remembered for the system, since they depend on the permissions of the user.
+	 */
+	@Test
+	public void testChildProjectsOfUsersAreNotRemembered() throws Exception {
+		FreeStyleProject child = this.j.createFreeStyleProject("child");
+		FreeStyleProject visible = this.j.createFreeStyleProject("visible");
+		this.j.jenkins.setSecurityRealm(this.j.createDummySecurityRealm());
+		this.j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+				.grant(Jenkins.READ).everywhere().to("alice")
+				.grant(Item.READ).onItems(visible).to("alice"));
+		DownstreamTrigger trigger = createTrigger("child, visible");
+
+		try (ACLContext ctx = ACL.as2(User.getById("alice", true).impersonate2())) {
+			assertEquals(Collections.singletonList(visible), trigger.getChildProjects(this.j.jenkins));
+		}
+		assertEquals(Arrays.asList(child, visible), getChildProjectsAsSystem(trigger));
+		try (ACLContext ctx = ACL.as2(User.getById("alice", true).impersonate2())) {
+			assertEquals(Collections.singletonList(visible), trigger.getChildProjects(this.j.jenkins));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package hudson.plugins.downstream_ext;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.scm.NullSCM;
+import hudson.scm.PollingResult;
+import hudson.scm.PollingResult.Change;
+import hudson.scm.SCMRevisionState;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SCM for load tests: polls take a configurable time and find changes
+ * for a configurable share of the polls - reproducibly for the same seed.
+ */
+final class FakeScm extends NullSCM {
+
+	private final long latencyMillis;
+	private final double changeRatio;
+	private final boolean requiresWorkspace;
+	private final Random random;
+	private final AtomicLong polls = new AtomicLong();
+
+	/**
+	 * @param latencyMillis
+	 *      how long each poll takes
+	 * @param changeRatio
+	 *      share of the polls which find changes - between 0 and 1
+	 * @param requiresWorkspace
+	 *      whether polling needs a workspace - i.e. whether downstream projects are polled asynchronously
+	 */
+	FakeScm(long latencyMillis, double changeRatio, boolean requiresWorkspace, long seed) {
+		this.latencyMillis = latencyMillis;
+		this.changeRatio = changeRatio;
+		this.requiresWorkspace = requiresWorkspace;
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public boolean requiresWorkspaceForPolling() {
+		return this.requiresWorkspace;
+	}
+
+	@Override
+	public SCMRevisionState calcRevisionsFromBuild(Run<?, ?> build, FilePath workspace, Launcher launcher,
+			TaskListener listener) {
+		// there's nothing to compare with - changes are found by chance
+		return SCMRevisionState.NONE;
+	}
+
+	@Override
+	public PollingResult compareRemoteRevisionWith(Job<?, ?> project, Launcher launcher, FilePath workspace,
+			TaskListener listener, SCMRevisionState baseline) throws InterruptedException {
+		this.polls.incrementAndGet();
+		if (this.latencyMillis > 0) {
+			Thread.sleep(this.latencyMillis);
+		}
+		boolean changes;
+		synchronized (this.random) {
+			changes = this.random.nextDouble() < this.changeRatio;
+		}
+		return changes ? new PollingResult(Change.SIGNIFICANT) : PollingResult.NO_CHANGES;
+	}
+
+	long getPolls() {
+		return this.polls.get();
+	}
+}
@@ -0,0 +1,96 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import jenkins.model.Jenkins;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.MockFolder;
+
+public class JobNameIndexTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	/**
+	 * Tests that the jobs of all folders are completed by the prefix of their full name,
+	 * but not the folders themselves.
+	 */
+	@Test
+	public void testCompletesByPrefix() throws Exception {
+		this.j.createFreeStyleProject("alpha");
+		this.j.createFreeStyleProject("alpine");
+		this.j.createFreeStyleProject("beta");
+		MockFolder folder = this.j.createFolder("folder");
+		folder.createProject(FreeStyleProject.class, "alpha");
+
+		assertEquals(Arrays.asList("alpha", "alpine"), JobNameIndex.get().complete("al"));
+		assertEquals(Collections.singletonList("folder/alpha"), JobNameIndex.get().complete("fo"));
+		assertEquals(Arrays.asList("alpha", "alpine", "beta", "folder/alpha"), JobNameIndex.get().complete(""));
+		assertTrue(JobNameIndex.get().complete("gamma").isEmpty());
+	}
+
+	/**
+	 * Tests that created, renamed, moved and deleted jobs are tracked - also those in a renamed folder.
+	 */
+	@Test
+	public void testChangedJobsAreTracked() throws Exception {
+		MockFolder folder = this.j.createFolder("folder");
+		FreeStyleProject job = folder.createProject(FreeStyleProject.class, "job");
+		folder.createProject(FreeStyleProject.class, "other");
+		// sorted between "folder" and "folder/" - must survive the removal of the folder's jobs
+		MockFolder sibling = this.j.createFolder("folder-2");
+		sibling.createProject(FreeStyleProject.class, "job");
+
+		folder.renameTo("renamed");
+		assertEquals(Collections.singletonList("folder-2/job"), JobNameIndex.get().complete("folder"));
+		assertEquals(Arrays.asList("renamed/job", "renamed/other"), JobNameIndex.get().complete("renamed/"));
+
+		job.renameTo("job2");
+		assertEquals(Arrays.asList("renamed/job2", "renamed/other"), JobNameIndex.get().complete("renamed/"));
+
+		job.delete();
+		assertEquals(Collections.singletonList("renamed/other"), JobNameIndex.get().complete("renamed/"));
+
+		sibling.delete();
+		assertTrue(JobNameIndex.get().complete("folder").isEmpty());
+	}
+
+	@Test
+	public void testNumberOfCandidatesIsLimited() throws Exception {
+		for (int i = 0; i < JobNameIndex.MAX_CANDIDATES + 5; i++) {
+			this.j.createFreeStyleProject(String.format("job%02d", i));
+		}
+		assertEquals(JobNameIndex.MAX_CANDIDATES, JobNameIndex.get().complete("job").size());
+		assertEquals("job00", JobNameIndex.get().complete("job").get(0));
+	}
+
+	/**
+	 * Tests that only the jobs the user may read are completed.
+	 */
+	@Test
+	public void testOnlyReadableJobsAreCompleted() throws Exception {
+		FreeStyleProject visible = this.j.createFreeStyleProject("visible");
+		this.j.createFreeStyleProject("hidden");
+		this.j.jenkins.setSecurityRealm(this.j.createDummySecurityRealm());
+		this.j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+				.grant(Jenkins.READ).everywhere().to("alice")
+				.grant(Item.DISCOVER).everywhere().to("alice")
+				.grant(Item.READ).onItems(visible).to("alice"));
+
+		try (ACLContext ctx = ACL.as2(User.getById("alice", true).impersonate2())) {
+			assertEquals(Collections.singletonList("visible"), JobNameIndex.get().complete(""));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.scm.ChangeLogSet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class LocalChangesActionTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	/**
+	 * Creates a build with a change log of the given paths which keeps the actions added to it.
+	 */
+	private AbstractBuild createBuild(String... paths) throws Exception {
+		AbstractBuild build = mock(AbstractBuild.class);
+		File rootDir = this.tmp.newFolder();
+		if (paths.length > 0) {
+			Files.write(new File(rootDir, "changelog.xml").toPath(), "<log/>".getBytes(StandardCharsets.UTF_8));
+		}
+		when(build.getRootDir()).thenReturn(rootDir);
+
+		ChangeLogSet.Entry entry = mock(ChangeLogSet.Entry.class);
+		when(entry.getAffectedPaths()).thenReturn(Arrays.asList(paths));
+		List<ChangeLogSet.Entry> entries = paths.length > 0
+				? Collections.singletonList(entry) : Collections.<ChangeLogSet.Entry>emptyList();
+		ChangeLogSet changeSet = mock(ChangeLogSet.class);
+		when(changeSet.isEmptySet()).thenReturn(entries.isEmpty());
+		when(changeSet.iterator()).thenAnswer(invocation -> entries.iterator());
+		doReturn(changeSet).when(build).getChangeSet();
+
+		AtomicReference<Action> action = new AtomicReference<Action>();
+		when(build.getAction(LocalChangesAction.class)).thenAnswer(invocation -> action.get());
+		doAnswer(invocation -> {
+			assertTrue(action.compareAndSet(null, (Action) invocation.getArguments()[0]));
+			return null;
+		}).when(build).addAction(any(Action.class));
+		return build;
+	}
+
+	/**
+	 * Tests that the change log is read once per path filter, however often the build is checked.
+	 */
+	@Test
+	public void testChangeLogIsReadOncePerFilter() throws Exception {
+		AbstractBuild build = createBuild("src/main/Foo.java");
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(LocalChangesAction.hasChanges(build, null));
+			assertTrue(LocalChangesAction.hasChanges(build, "src/**"));
+			assertFalse(LocalChangesAction.hasChanges(build, " docs/** "));
+		}
+		assertFalse(LocalChangesAction.hasChanges(build, "docs/**"));
+
+		verify(build, times(3)).getChangeSet();
+		verify(build, times(1)).addAction(any(Action.class));
+	}
+
+	/**
+	 * Tests that a build with an empty change log file has no changes and
+	 * its change log isn't parsed.
+	 */
+	@Test
+	public void testEmptyChangeLogFile() throws Exception {
+		AbstractBuild build = createBuild();
+		new File(build.getRootDir(), "changelog.xml").createNewFile();
+
+		assertFalse(LocalChangesAction.hasChanges(build, null));
+		assertFalse(LocalChangesAction.hasChanges(build, "src/**"));
+		verify(build, never()).getChangeSet();
+	}
+
+	@Test
+	public void testPathFilter() throws Exception {
+		AbstractBuild build = createBuild("docs/index.md", "README.md");
+
+		assertTrue(LocalChangesAction.hasChanges(build, null));
+		assertTrue(LocalChangesAction.hasChanges(build, "docs/"));
+		assertFalse(LocalChangesAction.hasChanges(build, "src/**"));
+		assertFalse(LocalChangesAction.hasChanges(build, "src/**, **/*.java"));
+		assertTrue(LocalChangesAction.hasChanges(build, "src/**, **/*.md"));
+		assertFalse(LocalChangesAction.hasChanges(build, "pom.xml"));
+	}
+
+	/**
+	 * Tests that downstream projects checking the same build at the same time share
+	 * a single action and read the change log once.
+	 */
+	@Test
+	public void testConcurrentChecksShareTheAction() throws Exception {
+		AbstractBuild build = createBuild("src/main/Foo.java");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Boolean>> checks = new ArrayList<Callable<Boolean>>();
+			for (int i = 0; i < 32; i++) {
+				checks.add(() -> LocalChangesAction.hasChanges(build, "src/**"));
+			}
+			for (Future<Boolean> result : executor.invokeAll(checks)) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		verify(build, times(1)).addAction(any(Action.class));
+		verify(build, times(1)).getChangeSet();
+	}
+}
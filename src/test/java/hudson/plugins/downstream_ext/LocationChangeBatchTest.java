@@ -0,0 +1,156 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.model.Items;
+import hudson.model.Result;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+import org.jvnet.hudson.test.TestExtension;
+
+@SuppressWarnings("rawtypes")
+public class LocationChangeBatchTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private static DownstreamTrigger addTrigger(FreeStyleProject upstream, String childProjects) throws Exception {
+		DownstreamTrigger trigger = new DownstreamTrigger(childProjects, Result.SUCCESS, false, false,
+				Strategy.AND_HIGHER, null);
+		upstream.getPublishersList().add(trigger);
+		return trigger;
+	}
+
+	/**
+	 * Indexes the configured triggers - like saving the configuration of the upstream projects does.
+	 */
+	private void rebuildDependencyGraph() {
+		this.j.jenkins.rebuildDependencyGraph();
+	}
+
+	private static DownstreamTrigger getTrigger(AbstractProject upstream) {
+		return (DownstreamTrigger) upstream.getPublishersList().get(DownstreamTrigger.class);
+	}
+
+	/**
+	 * Tests that renaming a folder - which reports every job in it - updates the child projects
+	 * of an upstream project outside of it and saves the upstream project only once.
+	 */
+	@Test
+	public void testFolderRenameIsBatched() throws Exception {
+		MockFolder folder = this.j.createFolder("folder");
+		FreeStyleProject child1 = folder.createProject(FreeStyleProject.class, "child1");
+		FreeStyleProject child2 = folder.createProject(FreeStyleProject.class, "child2");
+		FreeStyleProject upstream = this.j.createFreeStyleProject("upstream");
+		addTrigger(upstream, "folder/child1, folder/child2");
+		rebuildDependencyGraph();
+		SaveCounter.saves.set(0);
+
+		folder.renameTo("renamed");
+		LocationChangeBatch.get().flush();
+
+		DownstreamTrigger trigger = getTrigger(upstream);
+		assertEquals("renamed/child1,renamed/child2", trigger.getChildProjectsValue());
+		assertEquals(Arrays.asList(child1, child2), trigger.getChildProjects(upstream.getParent()));
+		assertEquals(1, SaveCounter.saves.get());
+	}
+
+	@TestExtension("testFolderRenameIsBatched")
+	public static class SaveCounter extends SaveableListener {
+
+		static final AtomicInteger saves = new AtomicInteger();
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof FreeStyleProject && ((FreeStyleProject) o).getFullName().equals("upstream")) {
+				saves.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Tests that child projects configured relative to the folder of the upstream project
+	 * stay relative when renamed - also when several of them are renamed in one batch.
+	 */
+	@Test
+	public void testRelativeChildNames() throws Exception {
+		MockFolder folder = this.j.createFolder("folder");
+		FreeStyleProject upstream = folder.createProject(FreeStyleProject.class, "upstream");
+		FreeStyleProject child = folder.createProject(FreeStyleProject.class, "child");
+		FreeStyleProject other = this.j.createFreeStyleProject("other");
+		addTrigger(upstream, "child, ../other");
+		rebuildDependencyGraph();
+
+		child.renameTo("renamedChild");
+		other.renameTo("renamedOther");
+		LocationChangeBatch.get().flush();
+
+		DownstreamTrigger trigger = getTrigger(upstream);
+		assertEquals("renamedChild,../renamedOther", trigger.getChildProjectsValue());
+		assertEquals(Arrays.asList(child, other), trigger.getChildProjects(upstream.getParent()));
+	}
+
+	/**
+	 * Tests that moving a child project to another folder updates both relative names and
+	 * full names.
+	 */
+	@Test
+	public void testMoveAcrossFolders() throws Exception {
+		MockFolder folder1 = this.j.createFolder("folder1");
+		MockFolder folder2 = this.j.createFolder("folder2");
+		FreeStyleProject child = folder1.createProject(FreeStyleProject.class, "child");
+		FreeStyleProject sibling = folder1.createProject(FreeStyleProject.class, "upstream");
+		FreeStyleProject upstream = this.j.createFreeStyleProject("upstream");
+		addTrigger(sibling, "child");
+		addTrigger(upstream, "folder1/child");
+		rebuildDependencyGraph();
+
+		Items.move(child, folder2);
+		LocationChangeBatch.get().flush();
+
+		assertEquals("folder2/child", child.getFullName());
+		assertEquals("../folder2/child", getTrigger(sibling).getChildProjectsValue());
+		assertEquals(Collections.singletonList(child), getTrigger(sibling).getChildProjects(sibling.getParent()));
+		assertEquals("folder2/child", getTrigger(upstream).getChildProjectsValue());
+		assertEquals(Collections.singletonList(child), getTrigger(upstream).getChildProjects(upstream.getParent()));
+	}
+
+	/**
+	 * Tests that the path filter of a renamed child project is kept for it.
+	 */
+	@Test
+	public void testChildPathFiltersAreRewritten() throws Exception {
+		MockFolder folder = this.j.createFolder("folder");
+		FreeStyleProject upstream = folder.createProject(FreeStyleProject.class, "upstream");
+		FreeStyleProject child = folder.createProject(FreeStyleProject.class, "child");
+		folder.createProject(FreeStyleProject.class, "other");
+		DownstreamTrigger trigger = addTrigger(upstream, "child, other");
+		trigger.setChildPathFilters(Arrays.asList(new ChildPathFilter("child", "src/**", "**/*.md"),
+				new ChildPathFilter("other", "doc/**", null)));
+		rebuildDependencyGraph();
+
+		child.renameTo("renamed");
+		LocationChangeBatch.get().flush();
+
+		trigger = getTrigger(upstream);
+		assertEquals("renamed, other", trigger.getChildProjectsValue());
+		ChildPathFilter filter = trigger.getChildPathFilters().get(0);
+		assertEquals("renamed", filter.getChildProject());
+		assertEquals("src/**", filter.getIncludes());
+		assertEquals("**/*.md", filter.getExcludes());
+		assertSame(filter, trigger.getChildPathFilter(upstream.getParent(), child));
+		assertEquals("other", trigger.getChildPathFilters().get(1).getChildProject());
+	}
+}
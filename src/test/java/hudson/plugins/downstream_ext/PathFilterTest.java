@@ -0,0 +1,44 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PathFilterTest {
+
+	@Test
+	public void testNoPatternsMeansNoFilter() {
+		assertNull(PathFilter.compile(null));
+		assertNull(PathFilter.compile(" , "));
+	}
+
+	@Test
+	public void testAntStylePatterns() {
+		PathFilter filter = PathFilter.compile("src/main/**, pom.xml, **/*.properties, docs/");
+
+		assertTrue(filter.matches("src/main/java/Foo.java"));
+		assertTrue(filter.matches("/src/main/java/Foo.java"));
+		assertTrue(filter.matches("pom.xml"));
+		assertTrue(filter.matches("messages.properties"));
+		assertTrue(filter.matches("src/test/resources/messages.properties"));
+		assertTrue(filter.matches("docs/index.md"));
+
+		assertFalse(filter.matches("src/test/java/FooTest.java"));
+		assertFalse(filter.matches("module/pom.xml"));
+		assertFalse(filter.matches("README.md"));
+	}
+
+	@Test
+	public void testExcludesWinOverIncludes() {
+		PathFilter filter = PathFilter.compile("services/billing/**", "**/*.md, services/billing/docs/");
+
+		assertTrue(filter.matches("services/billing/src/Invoice.java"));
+		assertFalse(filter.matches("services/billing/README.md"));
+		assertFalse(filter.matches("services/billing/docs/api.txt"));
+		assertFalse(filter.matches("services/shipping/src/Parcel.java"));
+
+		PathFilter onlyExcludes = PathFilter.compile(null, "**/*.md");
+		assertTrue(onlyExcludes.matches("src/Foo.java"));
+		assertFalse(onlyExcludes.matches("README.md"));
+	}
+}
@@ -0,0 +1,192 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.DependencyGraph.Dependency;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+import hudson.scm.NullSCM;
+import hudson.scm.PollingResult;
+import hudson.scm.PollingResult.Change;
+import hudson.scm.SCMRevisionState;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class PollBatchTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private FreeStyleProject upstream;
+
+	@Before
+	public void setup() throws Exception {
+		BlockingScm.release = new CountDownLatch(0);
+		BlockingScm.started.drainPermits();
+		BlockingScm.interrupted.drainPermits();
+
+		this.upstream = this.j.createFreeStyleProject("upstream");
+		for (String name : new String[] {"down1", "down2", "down3"}) {
+			FreeStyleProject downstream = this.j.createFreeStyleProject(name);
+			downstream.setScm(new BlockingScm());
+			// without a build a poll doesn't even ask the SCM
+			this.j.buildAndAssertSuccess(downstream);
+		}
+		this.upstream.getPublishersList().add(new DownstreamTrigger("down1, down2, down3", Result.SUCCESS,
+				true, false, Strategy.AND_HIGHER, null));
+		this.j.jenkins.rebuildDependencyGraph();
+	}
+
+	@After
+	public void release() {
+		BlockingScm.release.countDown();
+	}
+
+	/**
+	 * Finds changes - after waiting for the test to release the poll.
+	 */
+	public static class BlockingScm extends NullSCM {
+
+		static volatile CountDownLatch release;
+		static final Semaphore started = new Semaphore(0);
+		static final Semaphore interrupted = new Semaphore(0);
+
+		@Override
+		public boolean requiresWorkspaceForPolling() {
+			return false;
+		}
+
+		@Override
+		public PollingResult compareRemoteRevisionWith(Job<?, ?> project, Launcher launcher, FilePath workspace,
+				TaskListener listener, SCMRevisionState baseline) throws InterruptedException {
+			started.release();
+			try {
+				release.await(60, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				interrupted.release();
+				throw e;
+			}
+			return new PollingResult(Change.SIGNIFICANT);
+		}
+	}
+
+	private DownstreamDependency getDependency(String downstream) {
+		for (Dependency d : this.j.jenkins.getDependencyGraph().getDownstreamDependencies(this.upstream)) {
+			if (d.getDownstreamProject().getName().equals(downstream)) {
+				return (DownstreamDependency) d;
+			}
+		}
+		throw new AssertionError("No dependency on " + downstream);
+	}
+
+	/**
+	 * Builds the upstream project and blocks the polls started afterwards.
+	 */
+	private FreeStyleBuild buildUpstream() throws Exception {
+		FreeStyleBuild build = this.j.buildAndAssertSuccess(this.upstream);
+		this.j.waitUntilNoActivity();
+		BlockingScm.started.drainPermits();
+		BlockingScm.release = new CountDownLatch(1);
+		return build;
+	}
+
+	private static void awaitPermits(Semaphore semaphore, int permits) throws InterruptedException {
+		assertTrue("Time out waiting for " + permits + " poll(s)", semaphore.tryAcquire(permits, 60, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that the polls of all downstream projects of a finished build run at the same time
+	 * and that each downstream project is triggered by its own poll.
+	 */
+	@Test
+	public void testSiblingsArePolledTogether() throws Exception {
+		BlockingScm.release = new CountDownLatch(1);
+		this.upstream.scheduleBuild2(0);
+
+		// the first dependency waits for its poll - the others are already polling
+		awaitPermits(BlockingScm.started, 3);
+		BlockingScm.release.countDown();
+		this.j.waitUntilNoActivity();
+
+		assertEquals(Result.SUCCESS, this.upstream.getLastBuild().getResult());
+		for (String name : new String[] {"down1", "down2", "down3"}) {
+			assertEquals(name, 2, this.j.jenkins.getItemByFullName(name, FreeStyleProject.class).getBuilds().size());
+		}
+		// no dependency polled again on its own
+		assertEquals(0, BlockingScm.started.availablePermits());
+	}
+
+	/**
+	 * Tests that a dependency which decides without its poll - like on an open poll circuit -
+	 * cancels it, but not the polls of its siblings.
+	 */
+	@Test
+	public void testReleasedPollIsCancelled() throws Exception {
+		FreeStyleBuild build = buildUpstream();
+
+		DownstreamDependency.TimedPoll poll1 = PollBatch.take(build, Result.SUCCESS, getDependency("down1"));
+		assertNotNull(poll1);
+		awaitPermits(BlockingScm.started, 3);
+
+		PollBatch.release(build, getDependency("down2"));
+		awaitPermits(BlockingScm.interrupted, 1);
+
+		BlockingScm.release.countDown();
+		assertTrue(poll1.get(60, TimeUnit.SECONDS).hasChanges());
+		DownstreamDependency.TimedPoll poll3 = PollBatch.take(build, Result.SUCCESS, getDependency("down3"));
+		assertTrue(poll3.get(60, TimeUnit.SECONDS).hasChanges());
+		assertEquals(0, BlockingScm.interrupted.availablePermits());
+	}
+
+	/**
+	 * Tests that the polls nobody has taken when the upstream build has completed are cancelled.
+	 */
+	@Test
+	public void testUntakenPollsAreCancelled() throws Exception {
+		FreeStyleBuild build = buildUpstream();
+
+		DownstreamDependency.TimedPoll poll1 = PollBatch.take(build, Result.SUCCESS, getDependency("down1"));
+		awaitPermits(BlockingScm.started, 3);
+
+		// like when the build completes
+		PollBatch.remove(build);
+		awaitPermits(BlockingScm.interrupted, 2);
+		assertFalse(poll1.isCancelled());
+
+		BlockingScm.release.countDown();
+		assertTrue(poll1.get(60, TimeUnit.SECONDS).hasChanges());
+	}
+
+	/**
+	 * Tests that a project which is evaluated again - or wasn't known when the batch started -
+	 * polls on its own.
+	 */
+	@Test
+	public void testTakenTwice() throws Exception {
+		FreeStyleBuild build = buildUpstream();
+		BlockingScm.release.countDown();
+
+		Set<DownstreamDependency.TimedPoll> polls = new HashSet<DownstreamDependency.TimedPoll>();
+		polls.add(PollBatch.take(build, Result.SUCCESS, getDependency("down1")));
+		assertNull(PollBatch.take(build, Result.SUCCESS, getDependency("down1")));
+		polls.add(PollBatch.take(build, Result.SUCCESS, getDependency("down2")));
+		polls.add(PollBatch.take(build, Result.SUCCESS, getDependency("down3")));
+		assertEquals(3, polls.size());
+		assertFalse(polls.contains(null));
+	}
+}
@@ -0,0 +1,74 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractProject;
+import hudson.model.TaskListener;
+import hudson.scm.PollingResult;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+@SuppressWarnings("rawtypes")
+public class PollCircuitBreakerTest {
+
+	@Test
+	public void testOpensAfterRepeatedFailures() {
+		PollCircuitBreaker breaker = new PollCircuitBreaker(3, 60, 1000);
+		AbstractProject project = mock(AbstractProject.class);
+
+		breaker.record(project, 10, true);
+		breaker.record(project, 5000, false);
+		assertTrue(breaker.tryPoll(project));
+		breaker.record(project, 10, true);
+		assertFalse(breaker.tryPoll(project));
+		assertTrue(breaker.isOpen(project));
+	}
+
+	@Test
+	public void testSuccessfulPollResetsFailures() {
+		PollCircuitBreaker breaker = new PollCircuitBreaker(2, 60, 1000);
+		AbstractProject project = mock(AbstractProject.class);
+
+		breaker.record(project, 10, true);
+		breaker.record(project, 10, false);
+		breaker.record(project, 10, true);
+		assertTrue(breaker.tryPoll(project));
+		assertFalse(breaker.isOpen(project));
+	}
+
+	@Test
+	public void testProbeAfterCoolDownCloses() {
+		PollCircuitBreaker breaker = new PollCircuitBreaker(1, 0, 1000);
+		AbstractProject project = mock(AbstractProject.class);
+
+		breaker.record(project, 10, true);
+		// cool-down is over: a probe is let through
+		assertTrue(breaker.tryPoll(project));
+		breaker.record(project, 10, false);
+		assertFalse(breaker.isOpen(project));
+		assertEquals(0, breaker.getRemainingCoolDown(project));
+	}
+
+	/**
+	 * Tests that polls which Jenkins reports as failed - while returning no changes - count as failures.
+	 */
+	@Test
+	public void testFailedPollsReportedByJenkinsOpen() {
+		final AbstractProject project = mock(AbstractProject.class);
+		when(project.poll(Mockito.<TaskListener>any())).thenAnswer(invocation -> {
+			// like AbstractProject.poll() for an IOException of the SCM
+			TaskListener listener = (TaskListener) invocation.getArguments()[0];
+			new PollingResultCache.PollListenerImpl().onPollingFailed(project, listener, new IOException("unreachable"));
+			return PollingResult.NO_CHANGES;
+		});
+
+		for (int i = 0; i < PollCircuitBreaker.THRESHOLD; i++) {
+			PollingResultCache.get().poll(project, TaskListener.NULL);
+		}
+		assertTrue(PollCircuitBreaker.get().isOpen(project));
+		PollCircuitBreaker.get().remove(project);
+	}
+}
@@ -0,0 +1,142 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractProject;
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsSessionRule;
+
+@SuppressWarnings("rawtypes")
+public class PollJournalTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Rule
+	public JenkinsSessionRule sessions = new JenkinsSessionRule();
+
+	private Path getFile() {
+		return this.tmp.getRoot().toPath().resolve("poll-journal");
+	}
+
+	private PollJournal createJournal(int compactAfter) {
+		PollJournal journal = new PollJournal(getFile(), compactAfter);
+		journal.doLoad();
+		return journal;
+	}
+
+	private List<String> readLines() throws IOException {
+		return Files.readAllLines(getFile(), StandardCharsets.UTF_8);
+	}
+
+	private static AbstractProject createProject(String fullName) {
+		AbstractProject project = mock(AbstractProject.class);
+		when(project.getFullName()).thenReturn(fullName);
+		return project;
+	}
+
+	private static Cause createUpstreamCause(String upstreamProject, int upstreamBuild) {
+		Cause.UpstreamCause cause = mock(Cause.UpstreamCause.class);
+		when(cause.getUpstreamProject()).thenReturn(upstreamProject);
+		when(cause.getUpstreamBuild()).thenReturn(upstreamBuild);
+		return cause;
+	}
+
+	@Test
+	public void testLineFormat() throws IOException {
+		PollJournal journal = createJournal(1000);
+		long id = journal.add(createProject("folder/down"), PollPriority.HIGH, 5,
+				Arrays.asList(createUpstreamCause("up", 3), createUpstreamCause("folder/other", 7)));
+		journal.done(Collections.singletonList(id));
+		journal.sync();
+
+		assertEquals(Arrays.asList("A\t0\tfolder/down\tHIGH\t5\tup#3\tfolder/other#7", "D\t0"), readLines());
+	}
+
+	/**
+	 * Tests that lines which can't be parsed - e.g. a line Jenkins crashed while writing - are skipped
+	 * and don't stop the journal from being read.
+	 */
+	@Test
+	public void testBrokenLinesAreSkipped() throws IOException {
+		Files.write(getFile(), Arrays.asList(
+				"A\t0\tdown\tHIGH\t5\tup#1",
+				"A\t1\tdown",
+				"garbage",
+				"A\tx\tdown\tLOW\t0\tup#2",
+				"A\t2\tdown\tURGENT\t0\tup#3",
+				"A\t3\tdown\tLOW\t0\tup#4",
+				"D\t3",
+				"A\t4\tdown\tNORMAL\t1\tup#5",
+				"A\t5\tdo"), StandardCharsets.UTF_8);
+
+		PollJournal journal = createJournal(1000);
+		// rewritten with the pending polls only
+		assertEquals(Arrays.asList("A\t0\tdown\tHIGH\t5\tup#1", "A\t4\tdown\tNORMAL\t1\tup#5"), readLines());
+		// ids aren't reused
+		assertEquals(6, journal.add(createProject("down"), PollPriority.NORMAL, 0,
+				Collections.singletonList(createUpstreamCause("up", 6))));
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		PollJournal journal = createJournal(10);
+		AbstractProject project = createProject("down");
+		List<Cause> causes = Collections.singletonList(createUpstreamCause("up", 1));
+		List<Long> ids = new ArrayList<Long>();
+		// keeps the timer from syncing in between
+		synchronized (journal) {
+			for (int i = 0; i < 10; i++) {
+				ids.add(journal.add(project, PollPriority.NORMAL, 0, causes));
+			}
+			journal.done(ids.subList(0, 9));
+			journal.sync();
+		}
+		assertEquals(Collections.singletonList("A\t9\tdown\tNORMAL\t0\tup#1"), readLines());
+
+		// appended to the compacted journal
+		journal.done(ids.subList(9, 10));
+		journal.sync();
+		assertEquals(Arrays.asList("A\t9\tdown\tNORMAL\t0\tup#1", "D\t9"), readLines());
+	}
+
+	/**
+	 * Tests that a poll pending on shutdown is started again when Jenkins has completed startup.
+	 */
+	@Test
+	public void testPendingPollsAreReplayedAfterRestart() throws Throwable {
+		this.sessions.then(j -> {
+			FreeStyleProject up = j.createFreeStyleProject("up");
+			FreeStyleProject down = j.createFreeStyleProject("down");
+			FreeStyleBuild upBuild = j.buildAndAssertSuccess(up);
+			PollJournal.get().add(down, PollPriority.HIGH, 0,
+					Collections.<Cause>singletonList(new Cause.UpstreamCause(upBuild)));
+		});
+		this.sessions.then(j -> {
+			FreeStyleProject down = j.jenkins.getItemByFullName("down", FreeStyleProject.class);
+			// a project which has never been built has changes
+			while (down.getLastBuild() == null) {
+				Thread.sleep(100);
+			}
+			FreeStyleBuild build = j.waitForCompletion(down.getLastBuild());
+			Cause.UpstreamCause cause = build.getCause(Cause.UpstreamCause.class);
+			assertEquals("up", cause.getUpstreamProject());
+			assertEquals(1, cause.getUpstreamBuild());
+		});
+	}
+}
@@ -0,0 +1,40 @@
+package hudson.plugins.downstream_ext;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the {@link PollLoadSimulator} with a large load. Not part of the regular test run -
+ * use {@code mvn -Pload test}. The load can be changed with the system properties
+ * {@code load.upstreamBuilds}, {@code load.downstreamProjects}, {@code load.fanOut},
+ * {@code load.upstreamThreads}, {@code load.pollLatency} (milliseconds) and {@code load.changeRatio}.
+ * The report is written to {@code target/poll-load-report.txt}.
+ */
+public class PollLoadRunner {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void runLoad() throws Exception {
+		PollLoadSimulator simulator = new PollLoadSimulator(tmp.getRoot());
+		simulator.upstreamBuilds = Integer.getInteger("load.upstreamBuilds", simulator.upstreamBuilds);
+		simulator.downstreamProjects = Integer.getInteger("load.downstreamProjects", simulator.downstreamProjects);
+		simulator.fanOut = Integer.getInteger("load.fanOut", simulator.fanOut);
+		simulator.upstreamThreads = Integer.getInteger("load.upstreamThreads", simulator.upstreamThreads);
+		simulator.pollLatencyMillis = Long.getLong("load.pollLatency", simulator.pollLatencyMillis);
+		simulator.changeRatio = Double.parseDouble(System.getProperty("load.changeRatio",
+				String.valueOf(simulator.changeRatio)));
+
+		String report = simulator.run().toString();
+		System.out.println(report);
+		new File("target").mkdirs();
+		Files.write(Paths.get("target", "poll-load-report.txt"), report.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,295 @@
+package hudson.plugins.downstream_ext;
+
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.ItemGroup;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+import hudson.scm.SCMRevisionState;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Replays many finished upstream builds against many downstream projects whose
+ * {@link FakeScm} needs a workspace for polling - i.e. drives the asynchronous path of
+ * {@link DownstreamDependency} through the shared {@link AsyncPollExecutor} - and
+ * measures how the polls keep up.
+ * <p>
+ * Jenkins isn't running, so builds are scheduled directly on the mocked downstream projects.
+ * Their polls go through {@link hudson.scm.SCM#poll} to the fake SCM, like those of Jenkins do.
+ */
+@SuppressWarnings("rawtypes")
+final class PollLoadSimulator {
+
+	/**
+	 * Number of finished upstream builds.
+	 */
+	int upstreamBuilds = 5000;
+
+	int downstreamProjects = 200;
+
+	/**
+	 * Number of downstream projects triggered by each upstream build.
+	 */
+	int fanOut = 10;
+
+	/**
+	 * Number of threads finishing upstream builds at the same time.
+	 */
+	int upstreamThreads = 4;
+
+	long pollLatencyMillis = 5;
+
+	double changeRatio = 0.5;
+
+	long seed = 42;
+
+	/**
+	 * Directory for the polling logs of the downstream projects.
+	 */
+	final File rootDir;
+
+	private final List<Queue<Long>> submitted = new ArrayList<Queue<Long>>();
+	private final Queue<Long> queueLatencies = new ConcurrentLinkedQueue<Long>();
+	private final AtomicLong merged = new AtomicLong();
+	private final AtomicLong scheduledBuilds = new AtomicLong();
+
+	PollLoadSimulator(File rootDir) {
+		this.rootDir = rootDir;
+	}
+
+	Report run() throws InterruptedException {
+		AbstractProject upstream = mock(AbstractProject.class);
+		ItemGroup parent = mock(ItemGroup.class);
+		when(parent.getUrl()).thenReturn("http://load");
+		when(parent.getFullName()).thenReturn("load");
+		when(upstream.getParent()).thenReturn(parent);
+
+		DownstreamTrigger trigger = new DownstreamTrigger("", Result.SUCCESS, true, false, Strategy.AND_HIGHER,
+				MatrixTrigger.BOTH);
+		final List<AbstractProject> projects = new ArrayList<AbstractProject>();
+		final List<DownstreamDependency> dependencies = new ArrayList<DownstreamDependency>();
+		final List<FakeScm> scms = new ArrayList<FakeScm>();
+		for (int i = 0; i < this.downstreamProjects; i++) {
+			this.submitted.add(new ConcurrentLinkedQueue<Long>());
+			FakeScm scm = new FakeScm(this.pollLatencyMillis, this.changeRatio, true, this.seed + i);
+			scms.add(scm);
+			AbstractProject p = createDownstreamProject(i, scm);
+			projects.add(p);
+			dependencies.add(new DownstreamDependency(upstream, p, trigger));
+		}
+		final List<AbstractBuild> builds = new ArrayList<AbstractBuild>();
+		for (int i = 0; i < this.upstreamBuilds; i++) {
+			AbstractBuild build = mock(AbstractBuild.class);
+			when(build.getProject()).thenReturn(upstream);
+			when(build.getResult()).thenReturn(Result.SUCCESS);
+			builds.add(build);
+		}
+
+		long droppedBefore = TriggerMetrics.get().getDroppedPolls();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+		int threadsBefore = threads.getThreadCount();
+		ThreadSampler sampler = new ThreadSampler();
+		sampler.start();
+
+		long start = System.nanoTime();
+		ExecutorService upstreamPool = Executors.newFixedThreadPool(this.upstreamThreads);
+		for (int t = 0; t < this.upstreamThreads; t++) {
+			final int offset = t;
+			upstreamPool.execute(() -> {
+				for (int i = offset; i < builds.size(); i += this.upstreamThreads) {
+					for (int k = 0; k < this.fanOut; k++) {
+						int n = (i * this.fanOut + k) % projects.size();
+						this.submitted.get(n).add(System.nanoTime());
+						dependencies.get(n).shouldTriggerBuild(builds.get(i), TaskListener.NULL,
+								Collections.<Action>emptyList());
+					}
+				}
+			});
+		}
+		upstreamPool.shutdown();
+		if (!upstreamPool.awaitTermination(10, TimeUnit.MINUTES)) {
+			throw new IllegalStateException("Upstream builds didn't finish in time");
+		}
+		long submittedAt = System.nanoTime();
+
+		// the last task of each project runs after all its polls
+		final CountDownLatch drained = new CountDownLatch(projects.size());
+		for (AbstractProject p : projects) {
+			DownstreamTrigger.executeForProject(p, drained::countDown);
+		}
+		if (!drained.await(10, TimeUnit.MINUTES)) {
+			throw new IllegalStateException("Polls didn't finish in time");
+		}
+		long end = System.nanoTime();
+		sampler.interrupt();
+		sampler.join();
+
+		long unserved = 0;
+		for (Queue<Long> queue : this.submitted) {
+			unserved += queue.size();
+		}
+		long polls = 0;
+		for (FakeScm scm : scms) {
+			polls += scm.getPolls();
+		}
+		long[] latencies = new long[this.queueLatencies.size()];
+		int i = 0;
+		for (Long latency : this.queueLatencies) {
+			latencies[i++] = latency;
+		}
+		Arrays.sort(latencies);
+		return new Report((long) this.upstreamBuilds * this.fanOut, submittedAt - start, end - start,
+				polls, this.merged.get(), unserved,
+				TriggerMetrics.get().getDroppedPolls() - droppedBefore, this.scheduledBuilds.get(), latencies,
+				threads.getPeakThreadCount() - threadsBefore, sampler.peakPollers);
+	}
+
+	private AbstractProject createDownstreamProject(final int index, final FakeScm scm) {
+		final String name = "downstream-" + index;
+		final File dir = new File(this.rootDir, name);
+		dir.mkdirs();
+		Answer<Object> answer = invocation -> {
+			switch (invocation.getMethod().getName()) {
+			case "getScm":
+				return scm;
+			case "getName":
+			case "getFullName":
+			case "getFullDisplayName":
+				return name;
+			case "getRootDir":
+				return dir;
+			case "poll":
+				long now = System.nanoTime();
+				long served = 0;
+				Long submittedAt;
+				while ((submittedAt = this.submitted.get(index).poll()) != null) {
+					this.queueLatencies.add(TimeUnit.NANOSECONDS.toMillis(now - submittedAt));
+					served++;
+				}
+				this.merged.addAndGet(Math.max(0, served - 1));
+				// the fake SCM doesn't need the workspace, which Jenkins would look up first
+				return scm.poll((AbstractProject) invocation.getMock(), null, null,
+						(TaskListener) invocation.getArguments()[0], SCMRevisionState.NONE);
+			case "scheduleBuild":
+				this.scheduledBuilds.incrementAndGet();
+				return Boolean.TRUE;
+			default:
+				return Mockito.RETURNS_DEFAULTS.answer(invocation);
+			}
+		};
+		return mock(AbstractProject.class, answer);
+	}
+
+	/**
+	 * Samples the number of threads of the shared poll pool - the JVM only counts all threads,
+	 * including those of other pools with the same name.
+	 */
+	private static final class ThreadSampler extends Thread {
+
+		volatile int peakPollers;
+
+		ThreadSampler() {
+			super("Poll load thread sampler");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (!isInterrupted()) {
+				int pollers = AsyncPollExecutor.get().getThreadCount();
+				this.peakPollers = Math.max(this.peakPollers, pollers);
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	static final class Report {
+
+		final long triggers;
+		final long submitNanos;
+		final long totalNanos;
+		final long polls;
+		final long merged;
+		final long unserved;
+		final long dropped;
+		final long scheduledBuilds;
+		final long[] queueLatencies;
+		final int peakNewThreads;
+		final int peakPollerThreads;
+
+		Report(long triggers, long submitNanos, long totalNanos, long polls, long merged, long unserved,
+				long dropped, long scheduledBuilds, long[] queueLatencies, int peakNewThreads, int peakPollerThreads) {
+			this.triggers = triggers;
+			this.submitNanos = submitNanos;
+			this.totalNanos = totalNanos;
+			this.polls = polls;
+			this.merged = merged;
+			this.unserved = unserved;
+			this.dropped = dropped;
+			this.scheduledBuilds = scheduledBuilds;
+			this.queueLatencies = queueLatencies;
+			this.peakNewThreads = peakNewThreads;
+			this.peakPollerThreads = peakPollerThreads;
+		}
+
+		/**
+		 * Milliseconds from the trigger decision until a poll served it - at the given percentile.
+		 */
+		long getQueueLatency(double percentile) {
+			if (this.queueLatencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * this.queueLatencies.length) - 1;
+			return this.queueLatencies[Math.max(0, Math.min(index, this.queueLatencies.length - 1))];
+		}
+
+		private static double perSecond(long count, long nanos) {
+			return nanos == 0 ? 0 : count * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("triggers:                %d%n"
+					+ "trigger decisions/s:     %.0f%n"
+					+ "polls:                   %d (%.0f/s)%n"
+					+ "merged triggers:         %d%n"
+					+ "dropped polls:           %d%n"
+					+ "unserved triggers:       %d%n"
+					+ "scheduled builds:        %d%n"
+					+ "queue latency p50/p90/p99/max: %d/%d/%d/%d ms%n"
+					+ "peak poller threads:     %d%n"
+					+ "peak new threads:        %d%n"
+					+ "total time:              %d ms%n",
+					this.triggers, perSecond(this.triggers, this.submitNanos),
+					this.polls, perSecond(this.polls, this.totalNanos),
+					this.merged, this.dropped, this.unserved, this.scheduledBuilds,
+					getQueueLatency(50), getQueueLatency(90), getQueueLatency(99), getQueueLatency(100),
+					this.peakPollerThreads, this.peakNewThreads, TimeUnit.NANOSECONDS.toMillis(this.totalNanos));
+		}
+	}
+}
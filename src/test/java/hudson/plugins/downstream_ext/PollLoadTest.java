@@ -0,0 +1,37 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs a small {@link PollLoadSimulator} load as part of the regular build,
+ * to catch regressions of the asynchronous polling path - lost triggers, unmerged
+ * polls or triggers waiting too long. Use {@link PollLoadRunner} for larger loads.
+ */
+public class PollLoadTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testAllTriggersAreServedByFewerPolls() throws Exception {
+		PollLoadSimulator simulator = new PollLoadSimulator(tmp.getRoot());
+		simulator.upstreamBuilds = 300;
+		simulator.downstreamProjects = 20;
+		simulator.fanOut = 5;
+		simulator.pollLatencyMillis = 20;
+		PollLoadSimulator.Report report = simulator.run();
+
+		assertEquals(report.toString(), 0, report.unserved);
+		assertEquals(report.toString(), 0, report.dropped);
+		// triggers arrive much faster than a project can be polled, so most of them wait for the same poll
+		assertTrue("waiting polls weren't merged: " + report, 2 * report.merged >= report.triggers);
+		assertTrue(report.toString(), report.scheduledBuilds <= report.polls);
+		// polling each trigger on its own - even on all pool threads - would take that long
+		long unmergedMillis = report.triggers * simulator.pollLatencyMillis / AsyncPollExecutor.POOL_SIZE;
+		assertTrue("triggers waited too long: " + report, report.getQueueLatency(99) < unmergedMillis);
+	}
+}
@@ -0,0 +1,99 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractProject;
+import hudson.model.TaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("rawtypes")
+public class PollingLogTest {
+
+	private static final long MAX_SIZE = 20;
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private AbstractProject project;
+
+	@Before
+	public void setup() throws IOException {
+		this.project = mock(AbstractProject.class);
+		when(this.project.getRootDir()).thenReturn(this.tmp.newFolder("project"));
+	}
+
+	private void log(String line) {
+		TaskListener listener = PollingLog.open(this.project, MAX_SIZE);
+		listener.getLogger().println(line);
+		PollingLog.close(listener);
+	}
+
+	private List<String> readLines(String fileName) throws IOException {
+		Path file = this.project.getRootDir().toPath().resolve(fileName);
+		if (!Files.exists(file)) {
+			return Collections.emptyList();
+		}
+		return Files.readAllLines(file, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testPollsAreAppended() throws IOException {
+		log("first");
+		log("second");
+
+		assertEquals(Arrays.asList("first", "second"), readLines(PollingLog.FILE_NAME));
+		assertTrue(readLines(PollingLog.FILE_NAME + ".1").isEmpty());
+	}
+
+	/**
+	 * Tests that the log is moved aside when it's larger than the maximum size - replacing
+	 * the log moved aside before - and a new log is started.
+	 */
+	@Test
+	public void testLogIsRotated() throws IOException {
+		log("0123456789");
+		log("0123456789");
+		// not larger than the maximum size, yet
+		assertEquals(Arrays.asList("0123456789", "0123456789"), readLines(PollingLog.FILE_NAME));
+
+		log("third");
+		assertEquals(Collections.singletonList("third"), readLines(PollingLog.FILE_NAME));
+		assertEquals(Arrays.asList("0123456789", "0123456789"), readLines(PollingLog.FILE_NAME + ".1"));
+
+		log("fourth is quite long");
+		log("fifth");
+		assertEquals(Collections.singletonList("fifth"), readLines(PollingLog.FILE_NAME));
+		assertEquals(Arrays.asList("third", "fourth is quite long"), readLines(PollingLog.FILE_NAME + ".1"));
+	}
+
+	/**
+	 * Tests that polls are still logged - to the Jenkins log - if the log file can't be written.
+	 */
+	@Test
+	public void testFallbackToJenkinsLog() throws IOException {
+		File notADirectory = this.tmp.newFile("file");
+		when(this.project.getRootDir()).thenReturn(notADirectory);
+		TaskListener listener = PollingLog.open(this.project, MAX_SIZE);
+		assertNotNull(listener);
+		listener.getLogger().println("logged elsewhere");
+		PollingLog.close(listener);
+
+		when(this.project.getRootDir()).thenReturn(null);
+		listener = PollingLog.open(this.project, MAX_SIZE);
+		assertNotNull(listener);
+		PollingLog.close(listener);
+	}
+}
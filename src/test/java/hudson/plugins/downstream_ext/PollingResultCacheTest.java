@@ -0,0 +1,84 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.AbstractProject;
+import hudson.model.TaskListener;
+import hudson.scm.PollingResult;
+import hudson.scm.PollingResult.Change;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+@SuppressWarnings("rawtypes")
+public class PollingResultCacheTest {
+
+	@Test
+	public void testResultWithoutChangesIsReused() {
+		PollingResultCache cache = new PollingResultCache(60, 10);
+		AbstractProject project = mock(AbstractProject.class);
+		when(project.poll(Mockito.<TaskListener>any())).thenReturn(PollingResult.NO_CHANGES);
+
+		assertFalse(cache.poll(project, TaskListener.NULL).hasChanges());
+		assertFalse(cache.poll(project, TaskListener.NULL).hasChanges());
+		verify(project, times(1)).poll(Mockito.<TaskListener>any());
+
+		cache.invalidate(project);
+		cache.poll(project, TaskListener.NULL);
+		verify(project, times(2)).poll(Mockito.<TaskListener>any());
+	}
+
+	@Test
+	public void testResultWithChangesIsNotCached() {
+		PollingResultCache cache = new PollingResultCache(60, 10);
+		AbstractProject project = mock(AbstractProject.class);
+		when(project.poll(Mockito.<TaskListener>any())).thenReturn(new PollingResult(Change.SIGNIFICANT));
+
+		assertTrue(cache.poll(project, TaskListener.NULL).hasChanges());
+		assertTrue(cache.poll(project, TaskListener.NULL).hasChanges());
+		verify(project, times(2)).poll(Mockito.<TaskListener>any());
+	}
+
+	@Test
+	public void testResultOfFailedPollIsNotCached() {
+		PollingResultCache cache = new PollingResultCache(60, 10);
+		final AbstractProject project = mock(AbstractProject.class);
+		when(project.poll(Mockito.<TaskListener>any())).thenAnswer(invocation -> {
+			// like AbstractProject.poll() for an IOException of the SCM
+			new PollingResultCache.PollListenerImpl().onPollingFailed(project, TaskListener.NULL, new IOException("unreachable"));
+			return PollingResult.NO_CHANGES;
+		});
+
+		cache.poll(project, TaskListener.NULL);
+		cache.poll(project, TaskListener.NULL);
+		verify(project, times(2)).poll(Mockito.<TaskListener>any());
+		PollCircuitBreaker.get().remove(project);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedResultIsEvicted() {
+		PollingResultCache cache = new PollingResultCache(60, 1);
+		AbstractProject project1 = mock(AbstractProject.class);
+		when(project1.poll(Mockito.<TaskListener>any())).thenReturn(PollingResult.NO_CHANGES);
+		AbstractProject project2 = mock(AbstractProject.class);
+		when(project2.poll(Mockito.<TaskListener>any())).thenReturn(PollingResult.NO_CHANGES);
+
+		cache.poll(project1, TaskListener.NULL);
+		cache.poll(project2, TaskListener.NULL);
+		cache.poll(project1, TaskListener.NULL);
+		verify(project1, times(2)).poll(Mockito.<TaskListener>any());
+	}
+
+	@Test
+	public void testDisabledWithoutTimeToLive() {
+		PollingResultCache cache = new PollingResultCache(0, 10);
+		AbstractProject project = mock(AbstractProject.class);
+		when(project.poll(Mockito.<TaskListener>any())).thenReturn(PollingResult.NO_CHANGES);
+
+		cache.poll(project, TaskListener.NULL);
+		cache.poll(project, TaskListener.NULL);
+		verify(project, times(2)).poll(Mockito.<TaskListener>any());
+	}
+}
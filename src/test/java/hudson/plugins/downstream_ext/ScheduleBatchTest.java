@@ -0,0 +1,152 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.model.Jenkins;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+public class ScheduleBatchTest {
+
+	/**
+	 * Long enough for a test to flush the batch itself.
+	 */
+	private static final long WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Before
+	public void setup() {
+		// keeps the scheduled builds in the queue
+		this.j.jenkins.setQuietPeriod(60);
+	}
+
+	private static TriggerRequest createRequest(String note) {
+		return new TriggerRequest(new Cause.RemoteCause("localhost", note), Collections.<Action>emptyList());
+	}
+
+	/**
+	 * Tests that builds are only submitted to the queue when the batch is flushed and
+	 * that requests for the same project are merged into one build.
+	 */
+	@Test
+	public void testRequestsAreCollectedAndMerged() throws Exception {
+		FreeStyleProject project1 = this.j.createFreeStyleProject("project1");
+		FreeStyleProject project2 = this.j.createFreeStyleProject("project2");
+		ScheduleBatch batch = new ScheduleBatch(WINDOW);
+
+		assertNull(batch.schedule(project1, createRequest("first")));
+		assertNull(batch.schedule(project1, createRequest("second")));
+		assertNull(batch.schedule(project2, createRequest("third")));
+		assertFalse(project1.isInQueue());
+		assertFalse(project2.isInQueue());
+
+		batch.flush();
+		assertEquals(2, project1.getQueueItem().getCauses().size());
+		assertEquals(1, project2.getQueueItem().getCauses().size());
+	}
+
+	/**
+	 * Tests that another thread waiting for the queue lock sees either none or all
+	 * builds of a batch.
+	 */
+	@Test
+	public void testBatchIsSubmittedUnderOneQueueLock() throws Exception {
+		List<FreeStyleProject> projects = new ArrayList<FreeStyleProject>();
+		ScheduleBatch batch = new ScheduleBatch(WINDOW);
+		for (int i = 0; i < 5; i++) {
+			FreeStyleProject project = this.j.createFreeStyleProject("project" + i);
+			projects.add(project);
+			batch.schedule(project, createRequest("batched"));
+		}
+
+		QueueObserver.observed = new CountDownLatch(1);
+		batch.flush();
+		assertTrue(QueueObserver.observed.await(60, TimeUnit.SECONDS));
+		assertEquals(projects.size(), QueueObserver.queued.size());
+		assertTrue(QueueObserver.queued.containsAll(projects));
+	}
+
+	@TestExtension("testBatchIsSubmittedUnderOneQueueLock")
+	public static class QueueObserver extends QueueListener {
+
+		static volatile CountDownLatch observed;
+		static final List<Queue.Task> queued = Collections.synchronizedList(new ArrayList<Queue.Task>());
+
+		@Override
+		public void onEnterWaiting(Queue.WaitingItem wi) {
+			if (!"project0".equals(((FreeStyleProject) wi.task).getName())) {
+				return;
+			}
+			// waits for the queue lock held while the first build is submitted
+			new Thread(() -> {
+				Queue.withLock(() -> {
+					for (Queue.Item item : Jenkins.get().getQueue().getItems()) {
+						queued.add(item.task);
+					}
+				});
+				observed.countDown();
+			}).start();
+		}
+	}
+
+	/**
+	 * Tests that the request of a deleted project is dropped.
+	 */
+	@Test
+	public void testRemovedProjectIsNotScheduled() throws Exception {
+		FreeStyleProject removed = this.j.createFreeStyleProject("removed");
+		FreeStyleProject project = this.j.createFreeStyleProject("project");
+		ScheduleBatch batch = new ScheduleBatch(WINDOW);
+		batch.schedule(removed, createRequest("removed"));
+		batch.schedule(project, createRequest("project"));
+
+		batch.remove(removed);
+		batch.flush();
+		assertFalse(removed.isInQueue());
+		assertTrue(project.isInQueue());
+	}
+
+	/**
+	 * Tests that the batch is flushed when the window has passed.
+	 */
+	@Test
+	public void testBatchIsFlushedAfterTheWindow() throws Exception {
+		FreeStyleProject project = this.j.createFreeStyleProject("project");
+		ScheduleBatch batch = new ScheduleBatch(100);
+		assertNull(batch.schedule(project, createRequest("timed")));
+
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+		while (!project.isInQueue()) {
+			assertTrue("Time out waiting for the batch", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Tests that builds are scheduled right away without a window.
+	 */
+	@Test
+	public void testWithoutWindow() throws Exception {
+		FreeStyleProject project = this.j.createFreeStyleProject("project");
+		assertEquals(Boolean.TRUE, new ScheduleBatch(0).schedule(project, createRequest("direct")));
+		assertTrue(project.isInQueue());
+		assertSame(project, project.getQueueItem().task);
+	}
+}
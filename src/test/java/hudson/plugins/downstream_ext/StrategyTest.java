@@ -0,0 +1,46 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.model.Result;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+
+import org.junit.Test;
+
+public class StrategyTest {
+
+	@Test
+	public void testAndLowerIsDecidedByFirstMatchingResult() {
+		assertNull(Strategy.AND_LOWER.evaluateEarly(Result.FAILURE, Result.SUCCESS));
+		assertNull(Strategy.AND_LOWER.evaluateEarly(Result.FAILURE, Result.UNSTABLE));
+		assertEquals(Boolean.TRUE, Strategy.AND_LOWER.evaluateEarly(Result.FAILURE, Result.FAILURE));
+		assertEquals(Boolean.TRUE, Strategy.AND_LOWER.evaluateEarly(Result.FAILURE, Result.ABORTED));
+	}
+
+	@Test
+	public void testAndHigherIsOnlyDecidedByWorseResult() {
+		assertNull(Strategy.AND_HIGHER.evaluateEarly(Result.UNSTABLE, Result.SUCCESS));
+		assertNull(Strategy.AND_HIGHER.evaluateEarly(Result.UNSTABLE, Result.UNSTABLE));
+		assertEquals(Boolean.FALSE, Strategy.AND_HIGHER.evaluateEarly(Result.UNSTABLE, Result.FAILURE));
+	}
+
+	@Test
+	public void testExactIsOnlyDecidedByWorseResult() {
+		assertNull(Strategy.EXACT.evaluateEarly(Result.UNSTABLE, Result.SUCCESS));
+		assertNull(Strategy.EXACT.evaluateEarly(Result.UNSTABLE, Result.UNSTABLE));
+		assertEquals(Boolean.FALSE, Strategy.EXACT.evaluateEarly(Result.UNSTABLE, Result.FAILURE));
+	}
+
+	@Test
+	public void testPrecomputedConditionMatchesStrategy() {
+		Result[] results = { Result.SUCCESS, Result.UNSTABLE, Result.FAILURE, Result.NOT_BUILT, Result.ABORTED };
+		for (Strategy strategy : Strategy.values()) {
+			for (Result threshold : results) {
+				DownstreamTrigger trigger = new DownstreamTrigger("", threshold, false, false, strategy, null);
+				for (Result result : results) {
+					assertEquals(strategy + " " + threshold + " " + result,
+							strategy.evaluate(threshold, result), trigger.isConditionMet(result));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package hudson.plugins.downstream_ext;
+
+import static org.junit.Assert.*;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.plugins.downstream_ext.DownstreamTrigger.Strategy;
+import hudson.plugins.downstream_ext.TriggerMetrics.Outcome;
+
+import java.util.Map;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+public class TriggerMetricsTest {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	private static long getEvaluations(Outcome outcome) {
+		return TriggerMetrics.get().getEvaluations().get(outcome.name());
+	}
+
+	/**
+	 * Tests that the trigger decisions made for finished upstream builds are counted by outcome.
+	 */
+	@Test
+	public void testTriggerDecisionsAreCounted() throws Exception {
+		FreeStyleProject upstream = this.j.createFreeStyleProject("upstream");
+		FreeStyleProject triggered = this.j.createFreeStyleProject("triggered");
+		FreeStyleProject notTriggered = this.j.createFreeStyleProject("notTriggered");
+		upstream.getPublishersList().add(new DownstreamTrigger("triggered", Result.SUCCESS, false, false,
+				Strategy.AND_HIGHER, null));
+		this.j.jenkins.rebuildDependencyGraph();
+		long triggeredBefore = getEvaluations(Outcome.TRIGGERED);
+		long notMetBefore = getEvaluations(Outcome.CONDITION_NOT_MET);
+
+		this.j.buildAndAssertSuccess(upstream);
+		this.j.waitUntilNoActivity();
+		assertNotNull(triggered.getLastBuild());
+		assertEquals(triggeredBefore + 1, getEvaluations(Outcome.TRIGGERED));
+
+		upstream.getPublishersList().replace(new DownstreamTrigger("notTriggered", Result.UNSTABLE, false, false,
+				Strategy.EXACT, null));
+		this.j.jenkins.rebuildDependencyGraph();
+		this.j.buildAndAssertSuccess(upstream);
+		this.j.waitUntilNoActivity();
+		assertNull(notTriggered.getLastBuild());
+		assertEquals(notMetBefore + 1, getEvaluations(Outcome.CONDITION_NOT_MET));
+	}
+
+	@Test
+	public void testEveryOutcomeIsReported() {
+		Map<String, Long> evaluations = TriggerMetrics.get().getEvaluations();
+		for (Outcome outcome : Outcome.values()) {
+			assertTrue(outcome.name(), evaluations.containsKey(outcome.name()));
+		}
+	}
+
+	/**
+	 * Tests that poll latencies are counted in the right buckets - in total and by project -
+	 * and that the latencies of a deleted project are dropped.
+	 */
+	@Test
+	public void testPollLatencies() throws Exception {
+		FreeStyleProject project = this.j.createFreeStyleProject("project");
+		long countBefore = TriggerMetrics.get().getPollLatency().getCount();
+
+		TriggerMetrics.get().polled(project, 5);
+		TriggerMetrics.get().polled(project, 10);
+		TriggerMetrics.get().polled(project, 11);
+		TriggerMetrics.get().polled(project, 120000);
+
+		assertEquals(countBefore + 4, TriggerMetrics.get().getPollLatency().getCount());
+		LatencyHistogram latency = TriggerMetrics.get().getPollLatencyByProject().get("project");
+		assertEquals(4, latency.getCount());
+		assertEquals(120026, latency.getTotalMillis());
+		assertEquals(120000, latency.getMaxMillis());
+		assertEquals(Long.valueOf(2), latency.getBuckets().get("10"));
+		assertEquals(Long.valueOf(1), latency.getBuckets().get("50"));
+		assertEquals(Long.valueOf(0), latency.getBuckets().get("60000"));
+		assertEquals(Long.valueOf(1), latency.getBuckets().get("+Inf"));
+
+		project.delete();
+		assertFalse(TriggerMetrics.get().getPollLatencyByProject().containsKey("project"));
+	}
+
+	/**
+	 * Tests that the metrics are available over the remote API - but only with the permission
+	 * to read the system configuration.
+	 */
+	@Test
+	public void testRemoteApi() throws Exception {
+		this.j.jenkins.setSecurityRealm(this.j.createDummySecurityRealm());
+		this.j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+				.grant(Jenkins.ADMINISTER).everywhere().to("admin")
+				.grant(Jenkins.READ).everywhere().to("user"));
+		TriggerMetrics.get().droppedPoll();
+
+		JSONObject metrics = this.j.createWebClient().login("admin")
+				.getJSON("downstream-ext-metrics/api/json?depth=1").getJSONObject();
+		assertEquals(TriggerMetrics.get().getDroppedPolls(), metrics.getLong("droppedPolls"));
+		assertEquals(TriggerMetrics.get().getEvaluations().get("TRIGGERED").longValue(),
+				metrics.getJSONObject("evaluations").getLong("TRIGGERED"));
+		assertTrue(metrics.getJSONObject("pollLatency").has("buckets"));
+
+		this.j.createWebClient().login("user").assertFails("downstream-ext-metrics/api/json", 403);
+	}
+}